@@ -0,0 +1,62 @@
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * {@link SortingVisualizerComplete.LargeIntArray} over one {@link MemorySegment} from a shared
+ * {@link Arena}: a single allocation of any size the machine can back, indexed by long and freed
+ * as soon as {@link #close} is called. The Foreign Memory API is final from JDK 22, so this class
+ * lives outside SortingVisualizerComplete.java, which still builds on Java 8, and is loaded
+ * reflectively when compiled next to it:
+ *
+ * <pre>
+ * javac SortingVisualizerComplete.java
+ * javac --release 22 -cp . SegmentIntArray.java
+ * </pre>
+ */
+public final class SegmentIntArray implements SortingVisualizerComplete.LargeIntArray {
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT;
+
+    private final Arena arena;
+    private final MemorySegment segment;
+    private final long length;
+
+    public SegmentIntArray(long length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Negative length: " + length);
+        }
+        this.length = length;
+        this.arena = Arena.ofShared();
+        this.segment = arena.allocate(Math.max(1, length) * Integer.BYTES, 64);
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public int get(long index) {
+        return segment.getAtIndex(INT, index);
+    }
+
+    @Override
+    public void set(long index, int value) {
+        segment.setAtIndex(INT, index, value);
+    }
+
+    @Override
+    public SortingVisualizerComplete.LargeIntArray allocateLike(long length) {
+        return new SegmentIntArray(length);
+    }
+
+    @Override
+    public String kind() {
+        return "segment";
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+}
@@ -1,32 +1,364 @@
 import javax.swing.*;
 import javax.swing.plaf.basic.*;
+import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.Random;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
 
 public class SortingVisualizerComplete extends JFrame {
     
 
     interface SortingAlgorithm {
-        void sort(int[] array, VisualizationPanel panel);
+        void sort(int[] array, SortEventSink sink);
+        
+        /** True for engines with a 64-bit form, {@link #sort(long[], SortEventSink)}. */
+        default boolean sortsLongs() {
+            return false;
+        }
+        
+        /** Sorts 64-bit keys in place through the sink's {@code long[]} operations. */
+        default void sort(long[] array, SortEventSink sink) {
+            throw new UnsupportedOperationException(getClass().getSimpleName() + " only sorts ints");
+        }
+    }
+    
+    /**
+     * Receives the operations a {@link SortingAlgorithm} performs. Algorithms mutate the
+     * array only through {@link #swap} and {@link #write}, and read, compare and allocate keys
+     * through {@link #read}, {@link #compare} and {@link #allocate}, so a sink can observe and
+     * count every operation. Buffers are read and written through the sink as well.
+     */
+    interface SortEventSink {
+        boolean isSorting();
+        
+        void updateVisualization(int index1, int index2, int sortedIndex, int pivotIndex);
+        
+        default void updateVisualization(int index1, int index2) {
+            updateVisualization(index1, index2, -1, -1);
+        }
+        
+        void markSorted(int index);
+        
+        void swap(int[] array, int i, int j);
+        
+        void write(int[] array, int index, int value);
+        
+        default int read(int[] array, int index) {
+            return array[index];
+        }
+        
+        /** Compares two keys that were already read. */
+        default int compare(int a, int b) {
+            return Integer.compare(a, b);
+        }
+        
+        /** Reads and compares {@code array[i]} with {@code array[j]}. */
+        default int compare(int[] array, int i, int j) {
+            return compare(read(array, i), read(array, j));
+        }
+        
+        /** Allocates an auxiliary buffer of {@code length} keys. */
+        default int[] allocate(int length) {
+            return new int[length];
+        }
+        
+        /**
+         * Swaps two 64-bit keys. The {@code long[]} forms serve engines that sort 64-bit keys and
+         * default to plain array access, so sinks that only drive the int visualization may ignore
+         * them; sinks that count, lock or simulate operations override them with the int forms.
+         */
+        default void swap(long[] array, int i, int j) {
+            long temp = array[i];
+            array[i] = array[j];
+            array[j] = temp;
+        }
+        
+        default void write(long[] array, int index, long value) {
+            array[index] = value;
+        }
+        
+        default long read(long[] array, int index) {
+            return array[index];
+        }
+        
+        default int compare(long a, long b) {
+            return Long.compare(a, b);
+        }
+        
+        default int compare(long[] array, int i, int j) {
+            return compare(read(array, i), read(array, j));
+        }
+        
+        default long[] allocateLongs(int length) {
+            return new long[length];
+        }
+        
+        /** Bytes of {@link #radixKey} that radix sorts split into digits. */
+        default int keyBytes() {
+            return 4;
+        }
+        
+        /** The key of a value read from the array, as an unsigned number ordered like {@link #compare(int, int)}. */
+        default long radixKey(int value) {
+            return (value ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+        }
+        
+        /** Marks {@code [from, to)} as owned by a worker thread; {@code worker < 0} releases it. */
+        default void assignWorker(int from, int to, int worker) {
+        }
+        
+        /**
+         * Announces a stage of a sorting network, whose compare-exchanges all happen together;
+         * {@link SortingNetworks#partner} gives the pairs. The stage's swaps follow.
+         */
+        default void compareStage(int network, int span, int distance) {
+        }
+        
+        /**
+         * True when the sink neither observes nor remaps operations, so an engine may sort int keys
+         * on the array directly; sinks that count, record or reorder keys keep the default.
+         */
+        default boolean rawAccess() {
+            return false;
+        }
+        
+        /** A view that several threads may call at once; by default every call is serialized. */
+        default SortEventSink concurrentView() {
+            return new SynchronizedSink(this);
+        }
+    }
+    
+    static final class SynchronizedSink implements SortEventSink {
+        private final SortEventSink delegate;
+        
+        SynchronizedSink(SortEventSink delegate) {
+            this.delegate = delegate;
+        }
+        
+        @Override
+        public boolean isSorting() {
+            return delegate.isSorting();
+        }
+        
+        @Override
+        public synchronized void updateVisualization(int index1, int index2, int sortedIndex, int pivotIndex) {
+            delegate.updateVisualization(index1, index2, sortedIndex, pivotIndex);
+        }
+        
+        @Override
+        public synchronized void markSorted(int index) {
+            delegate.markSorted(index);
+        }
+        
+        @Override
+        public synchronized void swap(int[] array, int i, int j) {
+            delegate.swap(array, i, j);
+        }
+        
+        @Override
+        public synchronized void write(int[] array, int index, int value) {
+            delegate.write(array, index, value);
+        }
+        
+        @Override
+        public synchronized int read(int[] array, int index) {
+            return delegate.read(array, index);
+        }
+        
+        @Override
+        public synchronized int compare(int a, int b) {
+            return delegate.compare(a, b);
+        }
+        
+        @Override
+        public synchronized int compare(int[] array, int i, int j) {
+            return delegate.compare(array, i, j);
+        }
+        
+        @Override
+        public synchronized int[] allocate(int length) {
+            return delegate.allocate(length);
+        }
+        
+        @Override
+        public synchronized void swap(long[] array, int i, int j) {
+            delegate.swap(array, i, j);
+        }
+        
+        @Override
+        public synchronized void write(long[] array, int index, long value) {
+            delegate.write(array, index, value);
+        }
+        
+        @Override
+        public synchronized long read(long[] array, int index) {
+            return delegate.read(array, index);
+        }
+        
+        @Override
+        public synchronized int compare(long a, long b) {
+            return delegate.compare(a, b);
+        }
+        
+        @Override
+        public synchronized int compare(long[] array, int i, int j) {
+            return delegate.compare(array, i, j);
+        }
+        
+        @Override
+        public synchronized long[] allocateLongs(int length) {
+            return delegate.allocateLongs(length);
+        }
+        
+        @Override
+        public int keyBytes() {
+            return delegate.keyBytes();
+        }
+        
+        @Override
+        public long radixKey(int value) {
+            return delegate.radixKey(value);
+        }
+        
+        @Override
+        public synchronized void assignWorker(int from, int to, int worker) {
+            delegate.assignWorker(from, to, worker);
+        }
+        
+        @Override
+        public synchronized void compareStage(int network, int span, int distance) {
+            delegate.compareStage(network, span, distance);
+        }
+        
+        @Override
+        public SortEventSink concurrentView() {
+            return this;
+        }
     }
     
 
-    class VisualizationPanel extends JPanel {
+    class VisualizationPanel extends JPanel implements SortEventSink {
         private int[] array;
         private int arraySize = 100;
-        private int delay = 50;
-        private boolean sorting = false;
+        private InputDistribution distribution = InputDistribution.RANDOM;
+        private long nextSeed = InputDistribution.SEED;
+        private long lastSeed;
+        private final FrameScheduler scheduler = new FrameScheduler(this::repaintDirty);
+        private volatile boolean sorting = false;
+        private volatile SortEventRecorder recorder;
+        private volatile SortEventPlayer player;
+        private final Executor swingWorkers = task -> new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                task.run();
+                return null;
+            }
+        }.execute();
         private int comparing1 = -1;
         private int comparing2 = -1;
         private int sorted = -1;
         private int pivot = -1;
+        private int stageNetwork = -1;
+        private int stageSpan;
+        private int stageDistance;
+        
+        // Retained rendering: bars are drawn into backBuffer (EDT only) and only columns marked
+        // dirty since the last paint are redrawn. A column is one element, or, when the array is
+        // wider than the panel, one pixel bin of elements summarised by min/max/sum.
+        // The fields after dirtyLock are guarded by it.
+        private BufferedImage backBuffer;
+        private final Object dirtyLock = new Object();
+        private int binColumns;
+        private int[] binMin = new int[0];
+        private int[] binMax = new int[0];
+        private long[] binSum = new long[0];
+        private final BitSet staleBins = new BitSet();
+        private boolean binsInvalid = true;
+        private BitSet dirty = new BitSet();
+        private BitSet painting = new BitSet();
+        private int dirtyMin = Integer.MAX_VALUE;
+        private int dirtyMax = -1;
+        private boolean fullRedraw = true;
+        private int maxValue = 1;
+        private boolean maxStale;
+        private byte[] owners;
+        
+        // Access heatmap, one cell per column: each read, write or swapped element adds 1 to its
+        // cell, and heat halves every heatHalfLife accesses. Decay is applied lazily from the
+        // access tick at which a cell was last touched, so an access costs O(1).
+        private static final int HEAT_LEVELS = 32;
+        private static final int HEAT_MIN_HALF_LIFE = 256;
+        private volatile boolean heatmap;
+        private float[] heat = new float[0];
+        private long[] heatStamp = new long[0];
+        private long heatTick;
+        private double heatDecay;
+        
+        // Simulated cache: while a model is set, runs are fed through a copy of it and each bucket
+        // of the array is tinted by its first-level miss rate once the recording is done.
+        private volatile CacheSimulator cacheModel;
+        private volatile float[] missRates;
         
         private final Color DEFAULT_COLOR = new Color(52, 152, 219);
         private final Color COMPARING_COLOR = new Color(231, 76, 60);
         private final Color SORTED_COLOR = new Color(39, 174, 96);
         private final Color PIVOT_COLOR = new Color(155, 89, 182);
+        private final Color DEFAULT_ENVELOPE = blend(DEFAULT_COLOR, Color.WHITE);
+        private final Color COMPARING_ENVELOPE = blend(COMPARING_COLOR, Color.WHITE);
+        private final Color SORTED_ENVELOPE = blend(SORTED_COLOR, Color.WHITE);
+        private final Color PIVOT_ENVELOPE = blend(PIVOT_COLOR, Color.WHITE);
+        private final Color STAGE_LOW_COLOR = new Color(230, 126, 34);
+        private final Color STAGE_HIGH_COLOR = new Color(241, 196, 15);
+        private static final int STAGE_STRIP = 8;
+        private final Color[] HEAT_COLORS = heatColors();
+        private final Color[] MISS_COLORS = missColors();
+        private final Color[] WORKER_COLORS = {
+            new Color(241, 196, 15), new Color(230, 126, 34), new Color(26, 188, 156), new Color(52, 73, 94),
+            new Color(233, 30, 99), new Color(121, 85, 72), new Color(0, 188, 212), new Color(139, 195, 74)
+        };
         
         public VisualizationPanel() {
             setBackground(Color.WHITE);
@@ -34,26 +366,215 @@ public class SortingVisualizerComplete extends JFrame {
             initializeArray();
         }
         
+        public void setDistribution(InputDistribution distribution) {
+            this.distribution = distribution;
+        }
+        
+        public InputDistribution getDistribution() {
+            return distribution;
+        }
+        
+        /** The seed of the current input, to regenerate it with {@link InputDistribution#generate}. */
+        public long getSeed() {
+            return lastSeed;
+        }
+        
         private void initializeArray() {
             array = new int[arraySize];
             shuffleArray();
         }
         
+        /** Fills the array with a new input of the current distribution; every call moves to the next seed. */
         public void shuffleArray() {
-            Random random = new Random();
             int maxHeight = Math.max(400, getHeight() - 100);
-            for (int i = 0; i < arraySize; i++) {
-                array[i] = random.nextInt(maxHeight - 10) + 10;
-            }
+            lastSeed = nextSeed++;
+            distribution.generate(array, lastSeed, 10, maxHeight);
+            invalidateAll();
             resetVisualizationState();
             repaint();
         }
         
+        /** Replaces the array contents, e.g. when a player jumps to a recorded state. */
+        public void loadArray(int[] state) {
+            System.arraycopy(state, 0, array, 0, Math.min(state.length, array.length));
+            invalidateAll();
+        }
+        
         private void resetVisualizationState() {
-            comparing1 = -1;
-            comparing2 = -1;
-            sorted = -1;
-            pivot = -1;
+            setHighlight(-1, -1, -1, -1);
+            synchronized (dirtyLock) {
+                if (owners != null) {
+                    owners = null;
+                    fullRedraw = true;
+                }
+            }
+        }
+        
+        @Override
+        public void assignWorker(int from, int to, int worker) {
+            synchronized (dirtyLock) {
+                from = Math.max(0, from);
+                to = Math.min(arraySize, to);
+                if (from >= to) return;
+                if (owners == null || owners.length != arraySize) {
+                    if (worker < 0) return;
+                    owners = new byte[arraySize];
+                }
+                Arrays.fill(owners, from, to, (byte) (worker < 0 ? 0 : 1 + worker % WORKER_COLORS.length));
+                markDirtyRange(from, to - 1);
+            }
+        }
+        
+        private void setHighlight(int index1, int index2, int sortedIndex, int pivotIndex) {
+            synchronized (dirtyLock) {
+                if (stageNetwork >= 0) {
+                    stageNetwork = -1;
+                    fullRedraw = true;
+                }
+                markDirty(comparing1);
+                markDirty(comparing2);
+                markDirty(pivot);
+                if (sortedIndex != sorted) {
+                    markDirtyRange(Math.min(sorted, sortedIndex) + 1, Math.max(sorted, sortedIndex));
+                }
+                comparing1 = index1;
+                comparing2 = index2;
+                sorted = sortedIndex;
+                pivot = pivotIndex;
+                markDirty(index1);
+                markDirty(index2);
+                markDirty(pivotIndex);
+            }
+        }
+        
+        private void invalidateAll() {
+            synchronized (dirtyLock) {
+                maxStale = true;
+                binsInvalid = true;
+                fullRedraw = true;
+            }
+        }
+        
+        private int columnOf(int index) {
+            return binColumns == 0 ? index : (int) ((long) index * binColumns / arraySize);
+        }
+        
+        /** First element index of a column; {@code columnStart(binColumns)} is {@code arraySize}. */
+        private int columnStart(int column) {
+            return binColumns == 0 ? column : (int) (((long) column * arraySize + binColumns - 1) / binColumns);
+        }
+        
+        private void markDirty(int index) {
+            if (index >= 0 && index < arraySize) {
+                int column = columnOf(index);
+                dirty.set(column);
+                dirtyMin = Math.min(dirtyMin, column);
+                dirtyMax = Math.max(dirtyMax, column);
+            }
+        }
+        
+        private void markDirtyRange(int from, int to) {
+            from = Math.max(0, from);
+            to = Math.min(arraySize - 1, to);
+            if (from <= to) {
+                int first = columnOf(from);
+                int last = columnOf(to);
+                dirty.set(first, last + 1);
+                dirtyMin = Math.min(dirtyMin, first);
+                dirtyMax = Math.max(dirtyMax, last);
+            }
+        }
+        
+        /** Keeps the bin of {@code index} in step with a value change; O(1) unless an extreme is lost. */
+        private void updateBin(int index, int oldValue, int newValue) {
+            if (binColumns == 0 || binsInvalid) return;
+            int column = columnOf(index);
+            binSum[column] += (long) newValue - oldValue;
+            if (newValue < binMin[column]) {
+                binMin[column] = newValue;
+            } else if (oldValue == binMin[column] && newValue > oldValue) {
+                staleBins.set(column);
+            }
+            if (newValue > binMax[column]) {
+                binMax[column] = newValue;
+            } else if (oldValue == binMax[column] && newValue < oldValue) {
+                staleBins.set(column);
+            }
+        }
+        
+        private void rebuildBin(int column) {
+            int from = columnStart(column);
+            int to = columnStart(column + 1);
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            long sum = 0;
+            for (int i = from; i < to; i++) {
+                int value = array[i];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                sum += value;
+            }
+            binMin[column] = min;
+            binMax[column] = max;
+            binSum[column] = sum;
+        }
+        
+        /** Switches between per-element bars and pixel bins for the given panel width. */
+        private void layoutColumns(int panelWidth) {
+            int columns = arraySize > panelWidth ? panelWidth : 0;
+            if (columns != binColumns) {
+                binColumns = columns;
+                binsInvalid = true;
+                fullRedraw = true;
+            }
+            int cells = heatmap ? (binColumns > 0 ? binColumns : arraySize) : 0;
+            if (heat.length != cells) {
+                heat = new float[cells];
+                heatStamp = new long[cells];
+                heatTick = 0;
+            }
+            heatDecay = -Math.log(2) / Math.max(HEAT_MIN_HALF_LIFE, arraySize);
+            if (binColumns > 0 && binsInvalid) {
+                if (binMin.length != binColumns) {
+                    binMin = new int[binColumns];
+                    binMax = new int[binColumns];
+                    binSum = new long[binColumns];
+                }
+                for (int column = 0; column < binColumns; column++) {
+                    rebuildBin(column);
+                }
+                staleBins.clear();
+            } else if (binColumns > 0) {
+                for (int column = staleBins.nextSetBit(0); column >= 0; column = staleBins.nextSetBit(column + 1)) {
+                    rebuildBin(column);
+                }
+                staleBins.clear();
+            }
+            binsInvalid = false;
+        }
+        
+        /** Frame callback: asks Swing to repaint only the columns touched since the last paint. */
+        private void repaintDirty() {
+            int from;
+            int to;
+            synchronized (dirtyLock) {
+                if (fullRedraw || maxStale || heatmap) {
+                    repaint();
+                    return;
+                }
+                from = dirtyMin;
+                to = dirtyMax;
+            }
+            if (to >= 0) {
+                repaintColumns(from, to);
+            }
+        }
+        
+        private void repaintColumns(int from, int to) {
+            double columnWidth = binColumns > 0 ? 1 : (double) getWidth() / arraySize;
+            int x = (int) (from * columnWidth);
+            int right = (int) ((to + 1) * columnWidth) + 1;
+            repaint(x, 0, right - x, getHeight());
         }
         
         public void setArraySize(int size) {
@@ -61,153 +582,602 @@ public class SortingVisualizerComplete extends JFrame {
             initializeArray();
         }
         
-        public void setDelay(int delay) {
-            this.delay = Math.max(1, delay);
+        public void setStepsPerSecond(double stepsPerSecond) {
+            scheduler.setStepsPerSecond(stepsPerSecond);
+        }
+        
+        public void setFramesPerSecond(int framesPerSecond) {
+            scheduler.setFramesPerSecond(framesPerSecond);
         }
         
+        @Override
         public boolean isSorting() {
             return sorting;
         }
         
         public void stopSorting() {
             sorting = false;
+            SortEventRecorder active = recorder;
+            if (active != null) {
+                active.cancel();
+            }
+            SortEventPlayer playing = player;
+            if (playing != null) {
+                playing.wake();
+            }
+            scheduler.cancel();
             resetVisualizationState();
             repaint();
         }
         
-        public void startSorting(SortingAlgorithm algorithm, Runnable onComplete) {
+        /** Records and plays back {@code algorithm}, counting its operations into {@code metrics}. */
+        public void startSorting(SortingAlgorithm algorithm, SortMetrics metrics, Runnable onComplete) {
+            startSorting(algorithm, metrics, swingWorkers, onComplete);
+        }
+        
+        /** As above, with recording and playback run by {@code executor}; {@code onComplete} runs on the EDT. */
+        public void startSorting(SortingAlgorithm algorithm, SortMetrics metrics, Executor executor,
+                                 Runnable onComplete) {
+            start(() -> runSorting(algorithm, metrics), executor, onComplete);
+        }
+        
+        /**
+         * Streams a saved trace into the panel, resizing it to the trace's array; the trace is closed
+         * when playback ends. {@code onError} and {@code onComplete} run on the EDT.
+         */
+        public void playTrace(SortTraceReader trace, Consumer<IOException> onError, Runnable onComplete) {
+            setArraySize(trace.initialArray().length);
+            loadArray(trace.initialArray());
+            start(() -> {
+                try (SortTraceReader playing = trace) {
+                    scheduler.start();
+                    playing.play(VisualizationPanel.this);
+                    if (sorting) {
+                        sweepSorted();
+                    }
+                } catch (IOException e) {
+                    SwingUtilities.invokeLater(() -> onError.accept(e));
+                }
+            }, swingWorkers, onComplete);
+        }
+        
+        private void start(Runnable run, Executor executor, Runnable onComplete) {
             sorting = true;
             resetVisualizationState();
+            clearHeat();
+            missRates = null;
             
-            SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
-                @Override
-                protected Void doInBackground() throws Exception {
-                    algorithm.sort(array, VisualizationPanel.this);
-                    return null;
-                }
-                
-                @Override
-                protected void done() {
-                    sorting = false;
-                        for (int i = 0; i < arraySize && sorting == false; i++) {
-                        sorted = i;
-                        SwingUtilities.invokeLater(() -> repaint());
-                        try {
-                            Thread.sleep(Math.max(1, delay / 3));
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                            break;
+            executor.execute(() -> {
+                try {
+                    run.run();
+                } finally {
+                    SwingUtilities.invokeLater(() -> {
+                        sorting = false;
+                        resetVisualizationState();
+                        repaint();
+                        if (onComplete != null) {
+                            onComplete.run();
                         }
-                    }
-                    resetVisualizationState();
-                    SwingUtilities.invokeLater(() -> repaint());
-                    if (onComplete != null) {
-                        SwingUtilities.invokeLater(onComplete);
-                    }
+                    });
                 }
-            };
-            
-            worker.execute();
+            });
         }
         
-        public void updateVisualization(int index1, int index2) {
-            updateVisualization(index1, index2, -1, -1);
+        private void runSorting(SortingAlgorithm algorithm, SortMetrics metrics) {
+            SortEventRecorder active = new SortEventRecorder(array);
+            active.recordReads(heatmap);
+            SortEventPlayer activePlayer = new SortEventPlayer(active);
+            recorder = active;
+            player = activePlayer;
+            try {
+                FlightEvents.Sort event = new FlightEvents.Sort();
+                event.begin();
+                SortEventSink sink = active;
+                CacheSimSink simulated = null;
+                CacheSimulator model = cacheModel;
+                if (model != null) {
+                    simulated = new CacheSimSink(active, model.fresh(), active.workingArray());
+                    metrics.setCache(simulated.cache());
+                    sink = simulated;
+                }
+                metrics.setElapsedNanos(active.record(algorithm, new MeteredSink(sink, metrics)));
+                event.finish(metrics);
+                if (simulated != null) {
+                    missRates = simulated.bucketMissRates();
+                    repaint();
+                }
+                if (sorting) {
+                    scheduler.start();
+                    activePlayer.play(VisualizationPanel.this);
+                    sweepSorted();
+                }
+            } finally {
+                recorder = null;
+                player = null;
+            }
+        }
+        
+        /** Publishes frames on a clock shared with other panels; {@code null} restores the panel's own pacing. */
+        void useFrameClock(FrameClock clock) {
+            scheduler.useClock(clock);
+        }
+        
+        /** Pauses or resumes playback; a run paused before its recording finishes starts paused. */
+        public void setPlaybackPaused(boolean paused) {
+            SortEventPlayer playing = player;
+            if (playing != null) {
+                playing.setPaused(paused);
+            }
+        }
+        
+        public boolean isPlaybackPaused() {
+            SortEventPlayer playing = player;
+            return playing != null && playing.isPaused();
+        }
+        
+        public void stepPlayback(int direction) {
+            SortEventPlayer playing = player;
+            if (playing != null) {
+                playing.step(direction);
+            }
+        }
+        
+        public void seekPlayback(double fraction) {
+            SortEventPlayer playing = player;
+            if (playing != null) {
+                playing.seek(fraction);
+            }
+        }
+        
+        /** The active player, or null when no run is being played back. */
+        SortEventPlayer getPlayer() {
+            return player;
+        }
+        
+        /** Sweeps the sorted colour across the finished array in about half a second of frames. */
+        private void sweepSorted() {
+            int frames = Math.max(1, scheduler.getFramesPerSecond() / 2);
+            for (int frame = 1; frame <= frames && sorting; frame++) {
+                setHighlight(-1, -1, (int) ((long) arraySize * frame / frames) - 1, -1);
+                scheduler.awaitFrame();
+            }
         }
         
+        @Override
         public void updateVisualization(int index1, int index2, int sortedIndex, int pivotIndex) {
             if (!sorting) return;
             
-            comparing1 = index1;
-            comparing2 = index2;
-            sorted = sortedIndex;
-            pivot = pivotIndex;
-            
-            SwingUtilities.invokeLater(() -> repaint());
-            
-            try {
-                Thread.sleep(Math.max(1, delay));
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+            setHighlight(index1, index2, sortedIndex, pivotIndex);
+            scheduler.step();
         }
         
+        @Override
         public void markSorted(int index) {
             if (!sorting) return;
             
-            sorted = index;
-            SwingUtilities.invokeLater(() -> repaint());
-            try {
-                Thread.sleep(Math.max(1, delay / 2));
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+            setHighlight(comparing1, comparing2, index, pivot);
+            scheduler.step();
+        }
+        
+        @Override
+        public void compareStage(int network, int span, int distance) {
+            if (!sorting) return;
+            
+            setStage(network, span, distance);
+            scheduler.step();
+        }
+        
+        /** Shows a whole network stage instead of the pair highlights, until the next highlight. */
+        private void setStage(int network, int span, int distance) {
+            synchronized (dirtyLock) {
+                comparing1 = -1;
+                comparing2 = -1;
+                pivot = -1;
+                stageNetwork = network;
+                stageSpan = span;
+                stageDistance = distance;
+                fullRedraw = true;
             }
         }
         
-        public void swap(int i, int j) {
+        @Override
+        public void swap(int[] array, int i, int j) {
             if (i >= 0 && j >= 0 && i < array.length && j < array.length) {
                 int temp = array[i];
                 array[i] = array[j];
                 array[j] = temp;
+                if (array == this.array) {
+                    synchronized (dirtyLock) {
+                        if (binColumns > 0 && columnOf(i) != columnOf(j)) {
+                            updateBin(i, array[j], array[i]);
+                            updateBin(j, array[i], array[j]);
+                        }
+                        markDirty(i);
+                        markDirty(j);
+                        touch(i);
+                        touch(j);
+                    }
+                }
             }
         }
         
-        public int[] getArray() {
-            return array;
+        @Override
+        public void write(int[] array, int index, int value) {
+            if (index >= 0 && index < array.length) {
+                int old = array[index];
+                array[index] = value;
+                if (array == this.array) {
+                    synchronized (dirtyLock) {
+                        if (value > maxValue) {
+                            maxValue = value;
+                            fullRedraw = true;
+                        } else if (old == maxValue && value < old) {
+                            maxStale = true;
+                        }
+                        updateBin(index, old, value);
+                        markDirty(index);
+                        touch(index);
+                    }
+                }
+            }
         }
         
+        /** Reads only reach the panel from recordings made with the heatmap on; they heat the element. */
         @Override
-        protected void paintComponent(Graphics g) {
-            super.paintComponent(g);
-            
-            Graphics2D g2d = (Graphics2D) g;
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            
-            int panelWidth = getWidth();
-            int panelHeight = getHeight();
-            
-            if (array == null || arraySize == 0 || panelWidth <= 0 || panelHeight <= 50) return;
-            
-            double barWidth = (double) panelWidth / arraySize;
-            double maxHeight = panelHeight - 50;
-            int maxValue = getMaxValue();
+        public int read(int[] array, int index) {
+            if (heatmap && array == this.array) {
+                synchronized (dirtyLock) {
+                    touch(index);
+                }
+            }
+            return array[index];
+        }
+        
+        /** Shows how often each element was accessed recently as a red overlay on the bars. */
+        public void setHeatmap(boolean enabled) {
+            synchronized (dirtyLock) {
+                heatmap = enabled;
+                fullRedraw = true;
+            }
+            repaint();
+        }
+        
+        public boolean isHeatmap() {
+            return heatmap;
+        }
+        
+        // Caller holds dirtyLock. Accesses before the first layout of a new size are not counted.
+        private void touch(int index) {
+            if (!heatmap || index < 0 || index >= arraySize) return;
+            int cell = columnOf(index);
+            if (cell < heat.length) {
+                heat[cell] = decayedHeat(cell) + 1;
+                heatStamp[cell] = heatTick++;
+            }
+        }
+        
+        private float decayedHeat(int cell) {
+            return (float) (heat[cell] * Math.exp((heatTick - heatStamp[cell]) * heatDecay));
+        }
+        
+        private void clearHeat() {
+            synchronized (dirtyLock) {
+                Arrays.fill(heat, 0);
+                Arrays.fill(heatStamp, 0);
+                heatTick = 0;
+            }
+        }
+        
+        /**
+         * Tints each column by its heat. An element touched once per half-life settles at a heat of
+         * about 2, so {@code heat / (heat + 2 * elementsPerCell)} puts one access per pass at half
+         * intensity.
+         */
+        private void paintHeat(Graphics g, float[] cells, int panelHeight, double columnWidth) {
+            double scale = 2.0 * arraySize / cells.length;
+            int width = Math.max(1, (int) columnWidth);
+            for (int cell = 0; cell < cells.length; cell++) {
+                double intensity = cells[cell] / (cells[cell] + scale);
+                int level = (int) (intensity * (HEAT_COLORS.length - 1) + 0.5);
+                if (level > 0) {
+                    g.setColor(HEAT_COLORS[level]);
+                    g.fillRect((int) (cell * columnWidth), 0, width, panelHeight - 25);
+                }
+            }
+        }
+        
+        /** Runs started from now on go through a copy of {@code model}; {@code null} turns the simulation off. */
+        public void setCacheModel(CacheSimulator model) {
+            synchronized (dirtyLock) {
+                cacheModel = model;
+                if (model == null) {
+                    missRates = null;
+                }
+                fullRedraw = true;
+            }
+            repaint();
+        }
+        
+        public CacheSimulator getCacheModel() {
+            return cacheModel;
+        }
+        
+        /** Tints each bucket by the square root of its miss rate, so streaming (1 miss per line) still shows. */
+        private void paintMisses(Graphics g, float[] rates, int panelWidth, int panelHeight) {
+            for (int bucket = 0; bucket < rates.length; bucket++) {
+                int level = (int) (Math.sqrt(rates[bucket]) * (MISS_COLORS.length - 1) + 0.5);
+                if (level > 0) {
+                    int x = (int) ((long) bucket * panelWidth / rates.length);
+                    int right = (int) ((long) (bucket + 1) * panelWidth / rates.length);
+                    g.setColor(MISS_COLORS[level]);
+                    g.fillRect(x, 0, Math.max(1, right - x), panelHeight - 25);
+                }
+            }
+        }
+        
+        private Color[] missColors() {
+            Color[] colors = new Color[HEAT_LEVELS];
+            for (int level = 0; level < colors.length; level++) {
+                colors[level] = new Color(142, 68, 173, 200 * level / (colors.length - 1));
+            }
+            return colors;
+        }
+        
+        private Color[] heatColors() {
+            Color[] colors = new Color[HEAT_LEVELS];
+            for (int level = 0; level < colors.length; level++) {
+                colors[level] = new Color(255, 69, 0, 200 * level / (colors.length - 1));
+            }
+            return colors;
+        }
+        
+        public int[] getArray() {
+            return array;
+        }
+        
+        @Override
+        protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            
+            int panelWidth = getWidth();
+            int panelHeight = getHeight();
+            
+            if (array == null || arraySize == 0 || panelWidth <= 0 || panelHeight <= 50) return;
+            
+            FlightEvents.RenderFrame frameEvent = new FlightEvents.RenderFrame();
+            frameEvent.begin();
+            boolean full;
+            BitSet pending;
+            int pendingMin;
+            int pendingMax;
+            int columns;
+            int c1, c2, sortedIndex, pivotIndex;
+            int network, span, distance;
+            int max;
+            byte[] owned;
+            float[] heatCells = null;
+            synchronized (dirtyLock) {
+                layoutColumns(panelWidth);
+                if (heatmap) {
+                    heatCells = new float[heat.length];
+                    for (int cell = 0; cell < heatCells.length; cell++) {
+                        heatCells[cell] = decayedHeat(cell);
+                    }
+                }
+                if (maxStale) {
+                    int scanned = getMaxValue();
+                    fullRedraw |= scanned != maxValue;
+                    maxValue = scanned;
+                    maxStale = false;
+                }
+                // Small arrays draw value labels wider than a bar, so they cannot be patched per column.
+                full = fullRedraw || backBuffer == null
+                    || backBuffer.getWidth() != panelWidth || backBuffer.getHeight() != panelHeight
+                    || arraySize <= 50;
+                pending = dirty;
+                pendingMin = dirtyMin;
+                pendingMax = dirtyMax;
+                dirty = painting;
+                painting = pending;
+                dirtyMin = Integer.MAX_VALUE;
+                dirtyMax = -1;
+                fullRedraw = false;
+                columns = binColumns;
+                c1 = comparing1;
+                c2 = comparing2;
+                sortedIndex = sorted;
+                pivotIndex = pivot;
+                network = stageNetwork;
+                span = stageSpan;
+                distance = stageDistance;
+                max = maxValue;
+                owned = owners;
+                if (columns > 0) {
+                    // Bins are read under the lock; paint them into the buffer here as well.
+                    paintBins(full, pending, panelWidth, panelHeight, max, c1, c2, sortedIndex, pivotIndex);
+                }
+            }
+            
+            double barWidth = columns > 0 ? 1 : (double) panelWidth / arraySize;
+            if (columns == 0) {
+                Graphics2D g2d = prepareBackBuffer(full, panelWidth, panelHeight);
+                double maxHeight = panelHeight - 50;
+                if (full) {
+                    for (int i = 0; i < arraySize; i++) {
+                        drawBar(g2d, i, barWidth, maxHeight, panelHeight, max, c1, c2, sortedIndex, pivotIndex, owned);
+                    }
+                    drawLegend(g2d, panelWidth, panelHeight);
+                } else {
+                    for (int i = pending.nextSetBit(0); i >= 0 && i < arraySize; i = pending.nextSetBit(i + 1)) {
+                        clearColumn(g2d, (int) (i * barWidth), (int) ((i + 1) * barWidth), panelHeight);
+                        drawBar(g2d, i, barWidth, maxHeight, panelHeight, max, c1, c2, sortedIndex, pivotIndex, owned);
+                    }
+                }
+                g2d.dispose();
+            }
+            if (frameEvent.isEnabled()) {
+                frameEvent.arraySize = arraySize;
+                frameEvent.fullRedraw = full;
+                frameEvent.columns = full ? (columns > 0 ? columns : arraySize) : pending.cardinality();
+            }
+            pending.clear();
             
-            if (maxValue == 0) return;
+            g.drawImage(backBuffer, 0, 0, null);
+            if (heatCells != null) {
+                paintHeat(g, heatCells, panelHeight, barWidth);
+            }
+            float[] misses = missRates;
+            if (misses != null && cacheModel != null) {
+                paintMisses(g, misses, panelWidth, panelHeight);
+            }
+            if (network >= 0) {
+                paintStage(g, network, span, distance, columns, barWidth);
+            }
             
-            for (int i = 0; i < arraySize; i++) {
-                double barHeight = (double) array[i] / maxValue * maxHeight;
-                int x = (int) (i * barWidth);
-                int y = (int) (panelHeight - barHeight - 25);
-                int width = Math.max(1, (int) barWidth - 1);
-                int height = (int) barHeight;
+            // Columns dirtied after repaintDirty() computed the clip were drawn but not shown yet.
+            Rectangle clip = g.getClipBounds();
+            if (!full && pendingMax >= 0 && clip != null) {
+                int x = (int) (pendingMin * barWidth);
+                int right = (int) ((pendingMax + 1) * barWidth) + 1;
+                if (x < clip.x || right > clip.x + clip.width) {
+                    repaintColumns(pendingMin, pendingMax);
+                }
+            }
+            frameEvent.commit();
+        }
+        
+        /**
+         * Draws a network stage as a strip along the top: the lower key of every comparator in
+         * orange, the upper in yellow, and an arc per comparator when bars are wide enough.
+         */
+        private void paintStage(Graphics g, int network, int span, int distance, int columns, double barWidth) {
+            int count = columns > 0 ? columns : arraySize;
+            for (int column = 0; column < count; column++) {
+                int i = columns > 0 ? columnStart(column) : column;
+                int other = SortingNetworks.partner(network, span, distance, i, arraySize);
+                if (other < 0) continue;
+                int x = (int) (column * barWidth);
+                g.setColor(other > i ? STAGE_LOW_COLOR : STAGE_HIGH_COLOR);
+                g.fillRect(x, 0, Math.max(1, (int) ((column + 1) * barWidth) - x), STAGE_STRIP);
+            }
+            if (columns == 0 && barWidth >= 6) {
+                g.setColor(STAGE_LOW_COLOR.darker());
+                for (int i = 0; i < arraySize; i++) {
+                    int other = SortingNetworks.partner(network, span, distance, i, arraySize);
+                    if (other <= i) continue;
+                    int x1 = (int) ((i + 0.5) * barWidth);
+                    int x2 = (int) ((other + 0.5) * barWidth);
+                    int depth = Math.min(40, (x2 - x1) / 3 + 4);
+                    g.drawArc(x1, STAGE_STRIP - depth, x2 - x1, 2 * depth, 180, 180);
+                }
+            }
+        }
+        
+        private Graphics2D prepareBackBuffer(boolean full, int panelWidth, int panelHeight) {
+            if (backBuffer == null || backBuffer.getWidth() != panelWidth || backBuffer.getHeight() != panelHeight) {
+                backBuffer = new BufferedImage(panelWidth, panelHeight, BufferedImage.TYPE_INT_RGB);
+            }
+            Graphics2D g2d = backBuffer.createGraphics();
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            if (full) {
+                g2d.setColor(getBackground());
+                g2d.fillRect(0, 0, panelWidth, panelHeight);
+            }
+            return g2d;
+        }
+        
+        private void clearColumn(Graphics2D g2d, int x, int right, int panelHeight) {
+            g2d.setColor(getBackground());
+            g2d.fillRect(x, 0, Math.max(1, right - x), panelHeight - 24);
+        }
+        
+        /**
+         * Draws one pixel column per bin: a light line up to the bin maximum, a solid bar up to the
+         * mean and a dark tick at the minimum. A bin takes the highlight of any element inside it.
+         */
+        private void paintBins(boolean full, BitSet pending, int panelWidth, int panelHeight, int maxValue,
+                               int c1, int c2, int sortedIndex, int pivotIndex) {
+            Graphics2D g2d = prepareBackBuffer(full, panelWidth, panelHeight);
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+            int bottom = panelHeight - 25;
+            double scale = (panelHeight - 50) / (double) maxValue;
+            int start = full ? 0 : pending.nextSetBit(0);
+            for (int column = start; column >= 0 && column < binColumns;
+                 column = full ? column + 1 : pending.nextSetBit(column + 1)) {
+                if (!full) {
+                    clearColumn(g2d, column, column + 1, panelHeight);
+                }
+                int from = columnStart(column);
+                int to = columnStart(column + 1);
+                if (from >= to) continue;
                 
                 Color barColor = DEFAULT_COLOR;
-                
-                if (i == pivot) {
+                Color envelope = DEFAULT_ENVELOPE;
+                if (pivotIndex >= from && pivotIndex < to) {
                     barColor = PIVOT_COLOR;
-                } else if (i == comparing1 || i == comparing2) {
+                    envelope = PIVOT_ENVELOPE;
+                } else if ((c1 >= from && c1 < to) || (c2 >= from && c2 < to)) {
                     barColor = COMPARING_COLOR;
-                } else if (i <= sorted) {
+                    envelope = COMPARING_ENVELOPE;
+                } else if (owners != null && owners[from] != 0) {
+                    barColor = WORKER_COLORS[owners[from] - 1];
+                    envelope = blend(barColor, Color.WHITE);
+                } else if (to - 1 <= sortedIndex) {
                     barColor = SORTED_COLOR;
+                    envelope = SORTED_ENVELOPE;
                 }
                 
+                int yMax = (int) (bottom - binMax[column] * scale);
+                int yMean = (int) (bottom - (double) binSum[column] / (to - from) * scale);
+                int yMin = (int) (bottom - binMin[column] * scale);
+                g2d.setColor(envelope);
+                g2d.drawLine(column, yMax, column, bottom);
                 g2d.setColor(barColor);
-                g2d.fillRect(x, y, width, height);
-                
+                g2d.drawLine(column, yMean, column, bottom);
                 g2d.setColor(barColor.darker());
-                g2d.drawRect(x, y, width, height);
-                
-                if (arraySize <= 50) {
-                    g2d.setColor(Color.BLACK);
-                    g2d.setFont(new Font("Arial", Font.PLAIN, 10));
-                    String value = String.valueOf(array[i]);
-                    FontMetrics fm = g2d.getFontMetrics();
-                    int textX = x + width/2 - fm.stringWidth(value)/2;
-                    int textY = Math.max(15, y - 5);
-                    g2d.drawString(value, textX, textY);
-                }
+                g2d.drawLine(column, yMin, column, yMin);
             }
+            if (full) {
+                drawLegend(g2d, panelWidth, panelHeight);
+            }
+            g2d.dispose();
+        }
+        
+        private void drawBar(Graphics2D g2d, int i, double barWidth, double maxHeight, int panelHeight, int maxValue,
+                             int c1, int c2, int sortedIndex, int pivotIndex, byte[] owned) {
+            double barHeight = (double) array[i] / maxValue * maxHeight;
+            int x = (int) (i * barWidth);
+            int y = (int) (panelHeight - barHeight - 25);
+            int width = Math.max(1, (int) barWidth - 1);
+            int height = (int) barHeight;
+            
+            Color barColor = DEFAULT_COLOR;
+            
+            if (i == pivotIndex) {
+                barColor = PIVOT_COLOR;
+            } else if (i == c1 || i == c2) {
+                barColor = COMPARING_COLOR;
+            } else if (owned != null && owned[i] != 0) {
+                barColor = WORKER_COLORS[owned[i] - 1];
+            } else if (i <= sortedIndex) {
+                barColor = SORTED_COLOR;
+            }
+            
+            g2d.setColor(barColor);
+            g2d.fillRect(x, y, width, height);
+            
+            g2d.setColor(barColor.darker());
+            g2d.drawRect(x, y, width, height);
             
-            drawLegend(g2d, panelWidth, panelHeight);
+            if (arraySize <= 50) {
+                g2d.setColor(Color.BLACK);
+                g2d.setFont(new Font("Arial", Font.PLAIN, 10));
+                String value = String.valueOf(array[i]);
+                FontMetrics fm = g2d.getFontMetrics();
+                int textX = x + width/2 - fm.stringWidth(value)/2;
+                int textY = Math.max(15, y - 5);
+                g2d.drawString(value, textX, textY);
+            }
         }
         
         private void drawLegend(Graphics2D g2d, int panelWidth, int panelHeight) {
@@ -242,287 +1212,6515 @@ public class SortingVisualizerComplete extends JFrame {
                 g2d.setColor(Color.BLACK);
                 g2d.drawString("Pivot", legendX + boxSize + 5, legendY + 12);
             }
+            
+            if (heatmap && legendX + 2 * spacing + 100 < panelWidth) {
+                legendX += spacing;
+                g2d.setColor(HEAT_COLORS[HEAT_COLORS.length - 1]);
+                g2d.fillRect(legendX, legendY, boxSize, boxSize);
+                g2d.setColor(Color.BLACK);
+                g2d.drawString("Recently accessed", legendX + boxSize + 5, legendY + 12);
+            }
+            
+            if (cacheModel != null && legendX + 2 * spacing + 100 < panelWidth) {
+                legendX += spacing;
+                g2d.setColor(MISS_COLORS[MISS_COLORS.length - 1]);
+                g2d.fillRect(legendX, legendY, boxSize, boxSize);
+                g2d.setColor(Color.BLACK);
+                g2d.drawString("High miss rate", legendX + boxSize + 5, legendY + 12);
+            }
         }
         
         private int getMaxValue() {
-            int max = 1;            for (int value : array) {
+            int max = 1;
+            if (binColumns > 0) {
+                for (int value : binMax) {
+                    max = Math.max(max, value);
+                }
+                return max;
+            }
+            for (int value : array) {
                 max = Math.max(max, value);
             }
             return max;
         }
+        
+        private Color blend(Color color, Color other) {
+            return new Color((color.getRed() + other.getRed()) / 2, (color.getGreen() + other.getGreen()) / 2,
+                (color.getBlue() + other.getBlue()) / 2);
+        }
     }
     
-    class BubbleSort implements SortingAlgorithm {
+    static class BubbleSort implements SortingAlgorithm {
         @Override
-        public void sort(int[] array, VisualizationPanel panel) {
+        public void sort(int[] array, SortEventSink sink) {
             int n = array.length;
             
-            for (int i = 0; i < n - 1 && panel.isSorting(); i++) {
+            for (int i = 0; i < n - 1 && sink.isSorting(); i++) {
                 boolean swapped = false;
                 
-                for (int j = 0; j < n - i - 1 && panel.isSorting(); j++) {
-                    panel.updateVisualization(j, j + 1, n - i - 1, -1);
+                for (int j = 0; j < n - i - 1 && sink.isSorting(); j++) {
+                    sink.updateVisualization(j, j + 1, n - i - 1, -1);
                     
-                    if (array[j] > array[j + 1]) {
-                        panel.swap(j, j + 1);
+                    if (sink.compare(array, j, j + 1) > 0) {
+                        sink.swap(array, j, j + 1);
                         swapped = true;
-                        panel.updateVisualization(j, j + 1, n - i - 1, -1);
+                        sink.updateVisualization(j, j + 1, n - i - 1, -1);
                     }
                 }
                 
-                panel.markSorted(n - i - 1);
+                sink.markSorted(n - i - 1);
                 if (!swapped) break;
             }
             
-            if (panel.isSorting()) {
-                panel.markSorted(0);
+            if (sink.isSorting()) {
+                sink.markSorted(0);
             }
         }
     }
     
-    class SelectionSort implements SortingAlgorithm {
+    static class SelectionSort implements SortingAlgorithm {
         @Override
-        public void sort(int[] array, VisualizationPanel panel) {
+        public void sort(int[] array, SortEventSink sink) {
             int n = array.length;
             
-            for (int i = 0; i < n - 1 && panel.isSorting(); i++) {
+            for (int i = 0; i < n - 1 && sink.isSorting(); i++) {
                 int minIndex = i;
                 
-                for (int j = i + 1; j < n && panel.isSorting(); j++) {
-                    panel.updateVisualization(minIndex, j, i - 1, -1);
+                for (int j = i + 1; j < n && sink.isSorting(); j++) {
+                    sink.updateVisualization(minIndex, j, i - 1, -1);
                     
-                    if (array[j] < array[minIndex]) {
+                    if (sink.compare(array, j, minIndex) < 0) {
                         minIndex = j;
                     }
                 }
                 
-                if (minIndex != i && panel.isSorting()) {
-                    panel.updateVisualization(i, minIndex, i - 1, -1);
-                    panel.swap(i, minIndex);
+                if (minIndex != i && sink.isSorting()) {
+                    sink.updateVisualization(i, minIndex, i - 1, -1);
+                    sink.swap(array, i, minIndex);
+                }
+                
+                sink.markSorted(i);
+            }
+            
+            if (sink.isSorting()) {
+                sink.markSorted(n - 1);
+            }
+        }
+    }
+    
+    static class InsertionSort implements SortingAlgorithm {
+        @Override
+        public void sort(int[] array, SortEventSink sink) {
+            int n = array.length;
+            
+            for (int i = 1; i < n && sink.isSorting(); i++) {
+                int key = sink.read(array, i);
+                int j = i - 1;
+                
+                sink.updateVisualization(i, -1, -1, -1);
+                
+                while (j >= 0 && sink.isSorting()) {
+                    int value = sink.read(array, j);
+                    if (sink.compare(value, key) <= 0) break;
+                    sink.updateVisualization(j, j + 1, -1, -1);
+                    sink.write(array, j + 1, value);
+                    j--;
+                    
+                    if (j >= 0) {
+                        sink.updateVisualization(j + 1, j + 2, -1, -1);
+                    }
+                }
+                
+                if (sink.isSorting()) {
+                    sink.write(array, j + 1, key);
+                    sink.updateVisualization(j + 1, -1, i, -1);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Sorts blocks of at most {@link #MAX_BLOCK} ints with the bitonic network: padded to a power
+     * of two with {@code +infinity}, every comparator puts the smaller key at the lower index (the
+     * first stage of each merge compares mirrored positions instead of flipping half the sequence
+     * to descending), so comparators that touch the padding never do anything and can be skipped.
+     * {@link #create} uses the Vector API implementation in VectorBlockSorter.java when it has been
+     * compiled and {@code jdk.incubator.vector} is loaded, and {@link ScalarBlockSorter} otherwise.
+     */
+    interface BlockSorter {
+        int MAX_BLOCK = 64;
+        int DEFAULT_BLOCK = 32;
+        
+        /** Sorts {@code array[from, from + length)} as signed ints; {@code length <= MAX_BLOCK}. */
+        void sort(int[] array, int from, int length);
+        
+        /** "vector (N lanes)" or "scalar", for reports. */
+        String kind();
+        
+        static BlockSorter create() {
+            try {
+                return (BlockSorter) Class.forName("VectorBlockSorter").getConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError | UnsupportedOperationException e) {
+                // Not compiled, no jdk.incubator.vector module, or too few lanes to pay off
+                return new ScalarBlockSorter();
+            }
+        }
+        
+        /**
+         * Sorts the block with {@code sorter} when the sink allows raw access, and otherwise runs
+         * the same network comparator by comparator through the sink, so it can be watched.
+         */
+        static void sort(BlockSorter sorter, int[] array, int from, int length, SortEventSink sink) {
+            if (sink.rawAccess()) {
+                sorter.sort(array, from, length);
+                return;
+            }
+            int size = Integer.highestOneBit(Math.max(1, length - 1)) << 1;
+            for (int k = 2; k <= size; k <<= 1) {
+                for (int j = k >> 1; j > 0; j >>= 1) {
+                    int mirror = j == k >> 1 ? k - 1 : j;
+                    for (int i = 0; i < length && sink.isSorting(); i++) {
+                        int partner = i ^ mirror;
+                        if (partner > i && partner < length) {
+                            sink.updateVisualization(from + i, from + partner);
+                            if (sink.compare(array, from + i, from + partner) > 0) {
+                                sink.swap(array, from + i, from + partner);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    /** {@link BlockSorter} that runs the network on the array with branch-free min/max pairs. */
+    static final class ScalarBlockSorter implements BlockSorter {
+        @Override
+        public void sort(int[] array, int from, int length) {
+            int size = Integer.highestOneBit(Math.max(1, length - 1)) << 1;
+            for (int k = 2; k <= size; k <<= 1) {
+                for (int j = k >> 1; j > 0; j >>= 1) {
+                    int mirror = j == k >> 1 ? k - 1 : j;
+                    for (int i = 0; i < length; i++) {
+                        int partner = i ^ mirror;
+                        if (partner > i && partner < length) {
+                            int a = array[from + i];
+                            int b = array[from + partner];
+                            array[from + i] = Math.min(a, b);
+                            array[from + partner] = Math.max(a, b);
+                        }
+                    }
+                }
+            }
+        }
+        
+        @Override
+        public String kind() {
+            return "scalar";
+        }
+    }
+    
+    static class MergeSort implements SortingAlgorithm {
+        private final int blockSize;
+        private final BlockSorter blockSorter;
+        private SortEventSink sink;
+        
+        MergeSort() {
+            this(0);
+        }
+        
+        /** Ranges of at most {@code blockSize} keys are sorted by a {@link BlockSorter}; 0 recurses down to single keys. */
+        MergeSort(int blockSize) {
+            if (blockSize < 0 || blockSize > BlockSorter.MAX_BLOCK) {
+                throw new IllegalArgumentException("Block size must be 0 to " + BlockSorter.MAX_BLOCK + ": " + blockSize);
+            }
+            this.blockSize = blockSize;
+            this.blockSorter = blockSize > 0 ? BlockSorter.create() : null;
+        }
+        
+        @Override
+        public void sort(int[] array, SortEventSink sink) {
+            this.sink = sink;
+            mergeSort(array, 0, array.length - 1);
+        }
+        
+        /** Only the plain merge sort has a 64-bit form; block sorters sort ints. */
+        @Override
+        public boolean sortsLongs() {
+            return blockSize == 0;
+        }
+        
+        @Override
+        public void sort(long[] array, SortEventSink sink) {
+            this.sink = sink;
+            mergeSort(array, 0, array.length - 1);
+        }
+        
+        private void mergeSort(int[] array, int left, int right) {
+            if (blockSize > 0 && right - left < blockSize && sink.isSorting()) {
+                BlockSorter.sort(blockSorter, array, left, right - left + 1, sink);
+            } else if (left < right && sink.isSorting()) {
+                int middle = left + (right - left) / 2;
+                sink.updateVisualization(left, right, -1, middle);
+                
+                mergeSort(array, left, middle);
+                mergeSort(array, middle + 1, right);
+                merge(array, left, middle, right);
+            }
+        }
+        
+        private void merge(int[] array, int left, int middle, int right) {
+            if (!sink.isSorting()) return;
+            
+            FlightEvents.Merge event = new FlightEvents.Merge();
+            event.begin();
+            int comparisons = 0;
+            int[] leftArray = sink.allocate(middle - left + 1);
+            int[] rightArray = sink.allocate(right - middle);
+            
+            for (int i = 0; i < leftArray.length; i++) {
+                sink.write(leftArray, i, sink.read(array, left + i));
+            }
+            for (int j = 0; j < rightArray.length; j++) {
+                sink.write(rightArray, j, sink.read(array, middle + 1 + j));
+            }
+            
+            int i = 0, j = 0, k = left;
+            
+            while (i < leftArray.length && j < rightArray.length && sink.isSorting()) {
+                sink.updateVisualization(left + i, middle + 1 + j, k - 1, -1);
+                
+                int leftValue = sink.read(leftArray, i);
+                int rightValue = sink.read(rightArray, j);
+                comparisons++;
+                if (sink.compare(leftValue, rightValue) <= 0) {
+                    sink.write(array, k, leftValue);
+                    i++;
+                } else {
+                    sink.write(array, k, rightValue);
+                    j++;
                 }
+                k++;
+                sink.updateVisualization(k - 1, -1, k - 1, -1);
+            }
+            
+            while (i < leftArray.length && sink.isSorting()) {
+                sink.write(array, k, sink.read(leftArray, i));
+                sink.updateVisualization(k, -1, k, -1);
+                i++;
+                k++;
+            }
+            
+            while (j < rightArray.length && sink.isSorting()) {
+                sink.write(array, k, sink.read(rightArray, j));
+                sink.updateVisualization(k, -1, k, -1);
+                j++;
+                k++;
+            }
+            
+            event.end();
+            if (event.shouldCommit()) {
+                event.algorithm = "MergeSort";
+                event.size = right - left + 1;
+                event.comparisons = comparisons;
+                event.writes = k - left;
+                event.commit();
+            }
+        }
+        
+        private void mergeSort(long[] array, int left, int right) {
+            if (left < right && sink.isSorting()) {
+                int middle = left + (right - left) / 2;
+                sink.updateVisualization(left, right, -1, middle);
+                
+                mergeSort(array, left, middle);
+                mergeSort(array, middle + 1, right);
+                merge(array, left, middle, right);
+            }
+        }
+        
+        private void merge(long[] array, int left, int middle, int right) {
+            if (!sink.isSorting()) return;
+            
+            FlightEvents.Merge event = new FlightEvents.Merge();
+            event.begin();
+            int comparisons = 0;
+            long[] leftArray = sink.allocateLongs(middle - left + 1);
+            long[] rightArray = sink.allocateLongs(right - middle);
+            
+            for (int i = 0; i < leftArray.length; i++) {
+                sink.write(leftArray, i, sink.read(array, left + i));
+            }
+            for (int j = 0; j < rightArray.length; j++) {
+                sink.write(rightArray, j, sink.read(array, middle + 1 + j));
+            }
+            
+            int i = 0, j = 0, k = left;
+            
+            while (i < leftArray.length && j < rightArray.length && sink.isSorting()) {
+                sink.updateVisualization(left + i, middle + 1 + j, k - 1, -1);
                 
-                panel.markSorted(i);
+                long leftValue = sink.read(leftArray, i);
+                long rightValue = sink.read(rightArray, j);
+                comparisons++;
+                if (sink.compare(leftValue, rightValue) <= 0) {
+                    sink.write(array, k, leftValue);
+                    i++;
+                } else {
+                    sink.write(array, k, rightValue);
+                    j++;
+                }
+                k++;
+                sink.updateVisualization(k - 1, -1, k - 1, -1);
+            }
+            
+            while (i < leftArray.length && sink.isSorting()) {
+                sink.write(array, k, sink.read(leftArray, i));
+                sink.updateVisualization(k, -1, k, -1);
+                i++;
+                k++;
+            }
+            
+            while (j < rightArray.length && sink.isSorting()) {
+                sink.write(array, k, sink.read(rightArray, j));
+                sink.updateVisualization(k, -1, k, -1);
+                j++;
+                k++;
             }
             
-            if (panel.isSorting()) {
-                panel.markSorted(n - 1);
+            event.end();
+            if (event.shouldCommit()) {
+                event.algorithm = "MergeSort";
+                event.size = right - left + 1;
+                event.comparisons = comparisons;
+                event.writes = k - left;
+                event.commit();
+            }
+        }
+    }
+    
+    static class QuickSort implements SortingAlgorithm {
+        private SortEventSink sink;
+        
+        @Override
+        public void sort(int[] array, SortEventSink sink) {
+            this.sink = sink;
+            quickSort(array, 0, array.length - 1);
+        }
+        
+        @Override
+        public boolean sortsLongs() {
+            return true;
+        }
+        
+        @Override
+        public void sort(long[] array, SortEventSink sink) {
+            this.sink = sink;
+            quickSort(array, 0, array.length - 1);
+        }
+        
+        private void quickSort(int[] array, int low, int high) {
+            while (low < high && sink.isSorting()) {
+                int pivotIndex = partition(array, low, high);
+                
+                if (sink.isSorting()) {
+                    sink.updateVisualization(-1, -1, pivotIndex, pivotIndex);
+                }
+                
+                // Recurse into the smaller side and loop on the larger to bound the stack depth.
+                if (pivotIndex - low < high - pivotIndex) {
+                    quickSort(array, low, pivotIndex - 1);
+                    low = pivotIndex + 1;
+                } else {
+                    quickSort(array, pivotIndex + 1, high);
+                    high = pivotIndex - 1;
+                }
+            }
+        }
+        
+        private int partition(int[] array, int low, int high) {
+            FlightEvents.Partition event = new FlightEvents.Partition();
+            event.begin();
+            int comparisons = 0;
+            int swaps = 0;
+            int pivot = sink.read(array, high);
+            int i = low - 1;
+            
+            for (int j = low; j < high && sink.isSorting(); j++) {
+                sink.updateVisualization(j, high, -1, high);
+                
+                comparisons++;
+                if (sink.compare(sink.read(array, j), pivot) <= 0) {
+                    i++;
+                    sink.swap(array, i, j);
+                    swaps++;
+                    sink.updateVisualization(i, j, -1, high);
+                }
+            }
+            
+            if (sink.isSorting()) {
+                sink.swap(array, i + 1, high);
+                swaps++;
+                sink.updateVisualization(i + 1, high, -1, i + 1);
+            }
+            
+            event.end();
+            if (event.shouldCommit()) {
+                event.algorithm = "QuickSort";
+                event.size = high - low + 1;
+                event.comparisons = comparisons;
+                event.swaps = swaps;
+                event.commit();
+            }
+            return i + 1;
+        }
+        
+        private void quickSort(long[] array, int low, int high) {
+            while (low < high && sink.isSorting()) {
+                int pivotIndex = partition(array, low, high);
+                
+                if (sink.isSorting()) {
+                    sink.updateVisualization(-1, -1, pivotIndex, pivotIndex);
+                }
+                
+                if (pivotIndex - low < high - pivotIndex) {
+                    quickSort(array, low, pivotIndex - 1);
+                    low = pivotIndex + 1;
+                } else {
+                    quickSort(array, pivotIndex + 1, high);
+                    high = pivotIndex - 1;
+                }
+            }
+        }
+        
+        private int partition(long[] array, int low, int high) {
+            FlightEvents.Partition event = new FlightEvents.Partition();
+            event.begin();
+            int comparisons = 0;
+            int swaps = 0;
+            long pivot = sink.read(array, high);
+            int i = low - 1;
+            
+            for (int j = low; j < high && sink.isSorting(); j++) {
+                sink.updateVisualization(j, high, -1, high);
+                
+                comparisons++;
+                if (sink.compare(sink.read(array, j), pivot) <= 0) {
+                    i++;
+                    sink.swap(array, i, j);
+                    swaps++;
+                    sink.updateVisualization(i, j, -1, high);
+                }
+            }
+            
+            if (sink.isSorting()) {
+                sink.swap(array, i + 1, high);
+                swaps++;
+                sink.updateVisualization(i + 1, high, -1, i + 1);
+            }
+            
+            event.end();
+            if (event.shouldCommit()) {
+                event.algorithm = "QuickSort";
+                event.size = high - low + 1;
+                event.comparisons = comparisons;
+                event.swaps = swaps;
+                event.commit();
+            }
+            return i + 1;
+        }
+    }
+    
+    static class HeapSort implements SortingAlgorithm {
+        private SortEventSink sink;
+        private int offset;
+        
+        @Override
+        public void sort(int[] array, SortEventSink sink) {
+            this.sink = sink;
+            this.offset = 0;
+            int n = array.length;
+            
+            for (int i = n / 2 - 1; i >= 0 && sink.isSorting(); i--) {
+                heapify(array, n, i);
+            }
+            
+            for (int i = n - 1; i > 0 && sink.isSorting(); i--) {
+                sink.updateVisualization(0, i, i, 0);
+                sink.swap(array, 0, i);
+                sink.markSorted(i);
+                heapify(array, i, 0);
+            }
+            
+            if (sink.isSorting()) {
+                sink.markSorted(0);
+            }
+        }
+        
+        /** Heap sorts {@code [from, to)} without moving the sorted boundary; used as introsort's fallback. */
+        void sortRange(int[] array, int from, int to, SortEventSink sink) {
+            this.sink = sink;
+            this.offset = from;
+            int n = to - from;
+            
+            for (int i = n / 2 - 1; i >= 0 && sink.isSorting(); i--) {
+                heapify(array, n, i);
+            }
+            
+            for (int i = n - 1; i > 0 && sink.isSorting(); i--) {
+                sink.updateVisualization(from, from + i, -1, from);
+                sink.swap(array, from, from + i);
+                heapify(array, i, 0);
+            }
+        }
+        
+        @Override
+        public boolean sortsLongs() {
+            return true;
+        }
+        
+        @Override
+        public void sort(long[] array, SortEventSink sink) {
+            this.sink = sink;
+            this.offset = 0;
+            int n = array.length;
+            
+            for (int i = n / 2 - 1; i >= 0 && sink.isSorting(); i--) {
+                heapify(array, n, i);
+            }
+            
+            for (int i = n - 1; i > 0 && sink.isSorting(); i--) {
+                sink.updateVisualization(0, i, i, 0);
+                sink.swap(array, 0, i);
+                sink.markSorted(i);
+                heapify(array, i, 0);
+            }
+            
+            if (sink.isSorting()) {
+                sink.markSorted(0);
+            }
+        }
+        
+        void sortRange(long[] array, int from, int to, SortEventSink sink) {
+            this.sink = sink;
+            this.offset = from;
+            int n = to - from;
+            
+            for (int i = n / 2 - 1; i >= 0 && sink.isSorting(); i--) {
+                heapify(array, n, i);
+            }
+            
+            for (int i = n - 1; i > 0 && sink.isSorting(); i--) {
+                sink.updateVisualization(from, from + i, -1, from);
+                sink.swap(array, from, from + i);
+                heapify(array, i, 0);
+            }
+        }
+        
+        private void heapify(int[] array, int n, int root) {
+            FlightEvents.Heapify event = new FlightEvents.Heapify();
+            event.begin();
+            int swaps = siftDown(array, n, root);
+            event.end();
+            if (event.shouldCommit()) {
+                event.algorithm = "HeapSort";
+                event.size = n;
+                event.root = offset + root;
+                event.swaps = swaps;
+                event.commit();
+            }
+        }
+        
+        /**
+         * Sifts heap node {@code root} down and returns the number of swaps; heap positions are
+         * relative to {@code offset}.
+         */
+        private int siftDown(int[] array, int n, int root) {
+            if (!sink.isSorting()) return 0;
+            
+            int largest = root;
+            int left = 2 * root + 1;
+            int right = 2 * root + 2;
+            
+            sink.updateVisualization(offset + root, -1, -1, offset + root);
+            
+            if (left < n && sink.isSorting()) {
+                sink.updateVisualization(offset + left, offset + largest, -1, offset + root);
+                if (sink.compare(array, offset + left, offset + largest) > 0) {
+                    largest = left;
+                }
+            }
+            
+            if (right < n && sink.isSorting()) {
+                sink.updateVisualization(offset + right, offset + largest, -1, offset + root);
+                if (sink.compare(array, offset + right, offset + largest) > 0) {
+                    largest = right;
+                }
+            }
+            
+            if (largest != root && sink.isSorting()) {
+                sink.updateVisualization(offset + root, offset + largest, -1, offset + root);
+                sink.swap(array, offset + root, offset + largest);
+                return 1 + siftDown(array, n, largest);
+            }
+            return 0;
+        }
+        
+        private void heapify(long[] array, int n, int root) {
+            FlightEvents.Heapify event = new FlightEvents.Heapify();
+            event.begin();
+            int swaps = siftDown(array, n, root);
+            event.end();
+            if (event.shouldCommit()) {
+                event.algorithm = "HeapSort";
+                event.size = n;
+                event.root = offset + root;
+                event.swaps = swaps;
+                event.commit();
+            }
+        }
+        
+        private int siftDown(long[] array, int n, int root) {
+            if (!sink.isSorting()) return 0;
+            
+            int largest = root;
+            int left = 2 * root + 1;
+            int right = 2 * root + 2;
+            
+            sink.updateVisualization(offset + root, -1, -1, offset + root);
+            
+            if (left < n && sink.isSorting()) {
+                sink.updateVisualization(offset + left, offset + largest, -1, offset + root);
+                if (sink.compare(array, offset + left, offset + largest) > 0) {
+                    largest = left;
+                }
+            }
+            
+            if (right < n && sink.isSorting()) {
+                sink.updateVisualization(offset + right, offset + largest, -1, offset + root);
+                if (sink.compare(array, offset + right, offset + largest) > 0) {
+                    largest = right;
+                }
+            }
+            
+            if (largest != root && sink.isSorting()) {
+                sink.updateVisualization(offset + root, offset + largest, -1, offset + root);
+                sink.swap(array, offset + root, offset + largest);
+                return 1 + siftDown(array, n, largest);
+            }
+            return 0;
+        }
+    }
+    
+    /**
+     * Yaroslavskiy's dual-pivot quicksort. The two pivots are the second and fourth of five evenly
+     * spaced samples, and ranges of 16 or fewer elements finish with insertion sort.
+     */
+    static class DualPivotQuickSort implements SortingAlgorithm {
+        private static final int INSERTION_CUTOFF = 16;
+        
+        private SortEventSink sink;
+        
+        @Override
+        public void sort(int[] array, SortEventSink sink) {
+            this.sink = sink;
+            dualPivotQuickSort(array, 0, array.length - 1);
+        }
+        
+        @Override
+        public boolean sortsLongs() {
+            return true;
+        }
+        
+        @Override
+        public void sort(long[] array, SortEventSink sink) {
+            this.sink = sink;
+            dualPivotQuickSort(array, 0, array.length - 1);
+        }
+        
+        private void dualPivotQuickSort(int[] array, int low, int high) {
+            while (high - low > INSERTION_CUTOFF && sink.isSorting()) {
+                choosePivots(array, low, high);
+                int pivot1 = sink.read(array, low);
+                int pivot2 = sink.read(array, high);
+                int less = low + 1;
+                int great = high - 1;
+                
+                for (int k = less; k <= great && sink.isSorting(); k++) {
+                    sink.updateVisualization(k, great, -1, low);
+                    int value = sink.read(array, k);
+                    if (sink.compare(value, pivot1) < 0) {
+                        sink.swap(array, k, less++);
+                    } else if (sink.compare(value, pivot2) >= 0) {
+                        while (k < great && sink.compare(sink.read(array, great), pivot2) > 0) {
+                            great--;
+                        }
+                        sink.swap(array, k, great--);
+                        if (sink.compare(sink.read(array, k), pivot1) < 0) {
+                            sink.swap(array, k, less++);
+                        }
+                    }
+                }
+                less--;
+                great++;
+                sink.swap(array, low, less);
+                sink.swap(array, high, great);
+                sink.updateVisualization(less, great, -1, less);
+                
+                // Recurse into the two smaller parts and loop on the largest to bound the stack depth.
+                int leftSize = less - low;
+                int middleSize = great - less - 1;
+                int rightSize = high - great;
+                boolean middleNeeded = pivot1 != pivot2;
+                if (leftSize >= middleSize && leftSize >= rightSize) {
+                    if (middleNeeded) dualPivotQuickSort(array, less + 1, great - 1);
+                    dualPivotQuickSort(array, great + 1, high);
+                    high = less - 1;
+                } else if (rightSize >= middleSize || !middleNeeded) {
+                    dualPivotQuickSort(array, low, less - 1);
+                    if (middleNeeded) dualPivotQuickSort(array, less + 1, great - 1);
+                    low = great + 1;
+                } else {
+                    dualPivotQuickSort(array, low, less - 1);
+                    dualPivotQuickSort(array, great + 1, high);
+                    low = less + 1;
+                    high = great - 1;
+                }
+            }
+            insertionSort(array, low, high, sink);
+        }
+        
+        /** Sorts five evenly spaced samples in place and moves the 2nd and 4th to the range ends. */
+        private void choosePivots(int[] array, int low, int high) {
+            int seventh = (high - low + 1) / 7;
+            int e3 = (low + high) >>> 1;
+            int e2 = e3 - seventh;
+            int e1 = e2 - seventh;
+            int e4 = e3 + seventh;
+            int e5 = e4 + seventh;
+            int[] samples = {e1, e2, e3, e4, e5};
+            for (int i = 1; i < samples.length; i++) {
+                for (int j = i; j > 0 && sink.compare(array, samples[j - 1], samples[j]) > 0; j--) {
+                    sink.swap(array, samples[j - 1], samples[j]);
+                }
+            }
+            sink.swap(array, low, e2);
+            sink.swap(array, high, e4);
+        }
+        
+        static void insertionSort(int[] array, int low, int high, SortEventSink sink) {
+            for (int i = low + 1; i <= high && sink.isSorting(); i++) {
+                int key = sink.read(array, i);
+                int j = i - 1;
+                while (j >= low) {
+                    int value = sink.read(array, j);
+                    if (sink.compare(value, key) <= 0) break;
+                    sink.updateVisualization(j, j + 1);
+                    sink.write(array, j + 1, value);
+                    j--;
+                }
+                sink.write(array, j + 1, key);
+            }
+        }
+        
+        private void dualPivotQuickSort(long[] array, int low, int high) {
+            while (high - low > INSERTION_CUTOFF && sink.isSorting()) {
+                choosePivots(array, low, high);
+                long pivot1 = sink.read(array, low);
+                long pivot2 = sink.read(array, high);
+                int less = low + 1;
+                int great = high - 1;
+                
+                for (int k = less; k <= great && sink.isSorting(); k++) {
+                    sink.updateVisualization(k, great, -1, low);
+                    long value = sink.read(array, k);
+                    if (sink.compare(value, pivot1) < 0) {
+                        sink.swap(array, k, less++);
+                    } else if (sink.compare(value, pivot2) >= 0) {
+                        while (k < great && sink.compare(sink.read(array, great), pivot2) > 0) {
+                            great--;
+                        }
+                        sink.swap(array, k, great--);
+                        if (sink.compare(sink.read(array, k), pivot1) < 0) {
+                            sink.swap(array, k, less++);
+                        }
+                    }
+                }
+                less--;
+                great++;
+                sink.swap(array, low, less);
+                sink.swap(array, high, great);
+                sink.updateVisualization(less, great, -1, less);
+                
+                int leftSize = less - low;
+                int middleSize = great - less - 1;
+                int rightSize = high - great;
+                boolean middleNeeded = pivot1 != pivot2;
+                if (leftSize >= middleSize && leftSize >= rightSize) {
+                    if (middleNeeded) dualPivotQuickSort(array, less + 1, great - 1);
+                    dualPivotQuickSort(array, great + 1, high);
+                    high = less - 1;
+                } else if (rightSize >= middleSize || !middleNeeded) {
+                    dualPivotQuickSort(array, low, less - 1);
+                    if (middleNeeded) dualPivotQuickSort(array, less + 1, great - 1);
+                    low = great + 1;
+                } else {
+                    dualPivotQuickSort(array, low, less - 1);
+                    dualPivotQuickSort(array, great + 1, high);
+                    low = less + 1;
+                    high = great - 1;
+                }
+            }
+            insertionSort(array, low, high, sink);
+        }
+        
+        private void choosePivots(long[] array, int low, int high) {
+            int seventh = (high - low + 1) / 7;
+            int e3 = (low + high) >>> 1;
+            int e2 = e3 - seventh;
+            int e1 = e2 - seventh;
+            int e4 = e3 + seventh;
+            int e5 = e4 + seventh;
+            int[] samples = {e1, e2, e3, e4, e5};
+            for (int i = 1; i < samples.length; i++) {
+                for (int j = i; j > 0 && sink.compare(array, samples[j - 1], samples[j]) > 0; j--) {
+                    sink.swap(array, samples[j - 1], samples[j]);
+                }
+            }
+            sink.swap(array, low, e2);
+            sink.swap(array, high, e4);
+        }
+        
+        static void insertionSort(long[] array, int low, int high, SortEventSink sink) {
+            for (int i = low + 1; i <= high && sink.isSorting(); i++) {
+                long key = sink.read(array, i);
+                int j = i - 1;
+                while (j >= low) {
+                    long value = sink.read(array, j);
+                    if (sink.compare(value, key) <= 0) break;
+                    sink.updateVisualization(j, j + 1);
+                    sink.write(array, j + 1, value);
+                    j--;
+                }
+                sink.write(array, j + 1, key);
+            }
+        }
+    }
+    
+    /**
+     * Introsort: quicksort with a median-of-three pivot (ninther above 128 elements) that falls back
+     * to {@link HeapSort} once recursion exceeds 2 log2 n, with insertion sort for small ranges.
+     * Worst case O(n log n).
+     */
+    static class IntroSort implements SortingAlgorithm {
+        private static final int INSERTION_CUTOFF = 16;
+        private static final int NINTHER_THRESHOLD = 128;
+        
+        private final HeapSort heapSort = new HeapSort();
+        private final int blockSize;
+        private final BlockSorter blockSorter;
+        private SortEventSink sink;
+        
+        IntroSort() {
+            this(0);
+        }
+        
+        /** Ranges of at most {@code blockSize} keys are sorted by a {@link BlockSorter}; 0 uses insertion sort. */
+        IntroSort(int blockSize) {
+            if (blockSize < 0 || blockSize > BlockSorter.MAX_BLOCK) {
+                throw new IllegalArgumentException("Block size must be 0 to " + BlockSorter.MAX_BLOCK + ": " + blockSize);
+            }
+            this.blockSize = blockSize;
+            this.blockSorter = blockSize > 0 ? BlockSorter.create() : null;
+        }
+        
+        @Override
+        public void sort(int[] array, SortEventSink sink) {
+            this.sink = sink;
+            int depthLimit = 2 * (31 - Integer.numberOfLeadingZeros(Math.max(1, array.length)));
+            introSort(array, 0, array.length - 1, depthLimit);
+        }
+        
+        /** Only plain introsort has a 64-bit form; block sorters sort ints. */
+        @Override
+        public boolean sortsLongs() {
+            return blockSize == 0;
+        }
+        
+        @Override
+        public void sort(long[] array, SortEventSink sink) {
+            this.sink = sink;
+            int depthLimit = 2 * (31 - Integer.numberOfLeadingZeros(Math.max(1, array.length)));
+            introSort(array, 0, array.length - 1, depthLimit);
+        }
+        
+        private void introSort(int[] array, int low, int high, int depthLimit) {
+            int cutoff = blockSize > 0 ? blockSize - 1 : INSERTION_CUTOFF;
+            while (high - low > cutoff && sink.isSorting()) {
+                if (depthLimit-- == 0) {
+                    heapSort.sortRange(array, low, high + 1, sink);
+                    return;
+                }
+                int pivotIndex = partition(array, low, high);
+                if (pivotIndex - low < high - pivotIndex) {
+                    introSort(array, low, pivotIndex - 1, depthLimit);
+                    low = pivotIndex + 1;
+                } else {
+                    introSort(array, pivotIndex + 1, high, depthLimit);
+                    high = pivotIndex - 1;
+                }
+            }
+            if (blockSize == 0) {
+                DualPivotQuickSort.insertionSort(array, low, high, sink);
+            } else if (low < high && sink.isSorting()) {
+                BlockSorter.sort(blockSorter, array, low, high - low + 1, sink);
+            }
+        }
+        
+        /** Lomuto partition around the chosen pivot, which is first moved to {@code high}. */
+        private int partition(int[] array, int low, int high) {
+            sink.swap(array, choosePivot(array, low, high, sink), high);
+            
+            int pivot = sink.read(array, high);
+            int i = low - 1;
+            for (int j = low; j < high && sink.isSorting(); j++) {
+                sink.updateVisualization(j, high, -1, high);
+                if (sink.compare(sink.read(array, j), pivot) <= 0) {
+                    i++;
+                    sink.swap(array, i, j);
+                }
+            }
+            sink.swap(array, i + 1, high);
+            sink.updateVisualization(i + 1, -1, -1, i + 1);
+            return i + 1;
+        }
+        
+        /** Index of the median of three keys for short ranges, of Tukey's ninther for long ones. */
+        static int choosePivot(int[] array, int low, int high, SortEventSink sink) {
+            int middle = (low + high) >>> 1;
+            if (high - low + 1 <= NINTHER_THRESHOLD) {
+                return medianOfThree(array, low, middle, high, sink);
+            }
+            int eighth = (high - low + 1) / 8;
+            return medianOfThree(array,
+                medianOfThree(array, low, low + eighth, low + 2 * eighth, sink),
+                medianOfThree(array, middle - eighth, middle, middle + eighth, sink),
+                medianOfThree(array, high - 2 * eighth, high - eighth, high, sink), sink);
+        }
+        
+        private static int medianOfThree(int[] array, int a, int b, int c, SortEventSink sink) {
+            if (sink.compare(array, a, b) < 0) {
+                return sink.compare(array, b, c) < 0 ? b : (sink.compare(array, a, c) < 0 ? c : a);
+            }
+            return sink.compare(array, a, c) < 0 ? a : (sink.compare(array, b, c) < 0 ? c : b);
+        }
+        
+        private void introSort(long[] array, int low, int high, int depthLimit) {
+            while (high - low > INSERTION_CUTOFF && sink.isSorting()) {
+                if (depthLimit-- == 0) {
+                    heapSort.sortRange(array, low, high + 1, sink);
+                    return;
+                }
+                int pivotIndex = partition(array, low, high);
+                if (pivotIndex - low < high - pivotIndex) {
+                    introSort(array, low, pivotIndex - 1, depthLimit);
+                    low = pivotIndex + 1;
+                } else {
+                    introSort(array, pivotIndex + 1, high, depthLimit);
+                    high = pivotIndex - 1;
+                }
+            }
+            DualPivotQuickSort.insertionSort(array, low, high, sink);
+        }
+        
+        private int partition(long[] array, int low, int high) {
+            sink.swap(array, choosePivot(array, low, high, sink), high);
+            
+            long pivot = sink.read(array, high);
+            int i = low - 1;
+            for (int j = low; j < high && sink.isSorting(); j++) {
+                sink.updateVisualization(j, high, -1, high);
+                if (sink.compare(sink.read(array, j), pivot) <= 0) {
+                    i++;
+                    sink.swap(array, i, j);
+                }
+            }
+            sink.swap(array, i + 1, high);
+            sink.updateVisualization(i + 1, -1, -1, i + 1);
+            return i + 1;
+        }
+        
+        static int choosePivot(long[] array, int low, int high, SortEventSink sink) {
+            int middle = (low + high) >>> 1;
+            if (high - low + 1 <= NINTHER_THRESHOLD) {
+                return medianOfThree(array, low, middle, high, sink);
+            }
+            int eighth = (high - low + 1) / 8;
+            return medianOfThree(array,
+                medianOfThree(array, low, low + eighth, low + 2 * eighth, sink),
+                medianOfThree(array, middle - eighth, middle, middle + eighth, sink),
+                medianOfThree(array, high - 2 * eighth, high - eighth, high, sink), sink);
+        }
+        
+        private static int medianOfThree(long[] array, int a, int b, int c, SortEventSink sink) {
+            if (sink.compare(array, a, b) < 0) {
+                return sink.compare(array, b, c) < 0 ? b : (sink.compare(array, a, c) < 0 ? c : a);
+            }
+            return sink.compare(array, a, c) < 0 ? a : (sink.compare(array, b, c) < 0 ? c : b);
+        }
+    }
+    
+    /**
+     * Quicksort with Dijkstra's three-way partition: keys equal to the pivot are gathered in the
+     * middle and never looked at again, so n keys drawn from k distinct values take O(n log k)
+     * rather than degrading towards O(n^2). Recurses into the smaller side and falls back to heap
+     * sort past 2 log2 n levels, as {@link IntroSort} does.
+     */
+    static class ThreeWayQuickSort implements SortingAlgorithm {
+        private static final int INSERTION_CUTOFF = 16;
+        
+        private final HeapSort heapSort = new HeapSort();
+        private SortEventSink sink;
+        
+        @Override
+        public void sort(int[] array, SortEventSink sink) {
+            this.sink = sink;
+            int depthLimit = 2 * (31 - Integer.numberOfLeadingZeros(Math.max(1, array.length)));
+            quickSort(array, 0, array.length - 1, depthLimit);
+        }
+        
+        private void quickSort(int[] array, int low, int high, int depthLimit) {
+            while (high - low > INSERTION_CUTOFF && sink.isSorting()) {
+                if (depthLimit-- == 0) {
+                    heapSort.sortRange(array, low, high + 1, sink);
+                    return;
+                }
+                sink.swap(array, low, IntroSort.choosePivot(array, low, high, sink));
+                int pivot = sink.read(array, low);
+                
+                // [low, less) < pivot, [less, i) == pivot, (great, high] > pivot
+                int less = low;
+                int great = high;
+                int i = low + 1;
+                while (i <= great && sink.isSorting()) {
+                    sink.updateVisualization(i, great, -1, less);
+                    int cmp = sink.compare(sink.read(array, i), pivot);
+                    if (cmp < 0) {
+                        sink.swap(array, less++, i++);
+                    } else if (cmp > 0) {
+                        sink.swap(array, i, great--);
+                    } else {
+                        i++;
+                    }
+                }
+                sink.updateVisualization(less, great, -1, less);
+                
+                if (less - low < high - great) {
+                    quickSort(array, low, less - 1, depthLimit);
+                    low = great + 1;
+                } else {
+                    quickSort(array, great + 1, high, depthLimit);
+                    high = less - 1;
+                }
+            }
+            DualPivotQuickSort.insertionSort(array, low, high, sink);
+        }
+
+    }
+    
+
+    /**
+     * Bottom-up merge sort that allocates nothing beyond one n-sized buffer, or nothing at all when
+     * given a large enough buffer by the caller. Runs of 16 are insertion sorted in place, then
+     * passes of doubling width merge between the array and the buffer (ping-pong); a pair of runs
+     * that is already in order is copied instead of merged.
+     */
+    static class BufferedMergeSort implements SortingAlgorithm {
+        private static final int RUN_LENGTH = 16;
+        
+        private final int[] sharedBuffer;
+        
+        BufferedMergeSort() {
+            this(null);
+        }
+        
+        /** Uses {@code buffer} as scratch space for every array no longer than it. */
+        BufferedMergeSort(int[] buffer) {
+            this.sharedBuffer = buffer;
+        }
+        
+        @Override
+        public void sort(int[] array, SortEventSink sink) {
+            int n = array.length;
+            if (n < 2) return;
+            
+            for (int from = 0; from < n && sink.isSorting(); from += RUN_LENGTH) {
+                DualPivotQuickSort.insertionSort(array, from, Math.min(from + RUN_LENGTH, n) - 1, sink);
+            }
+            if (n <= RUN_LENGTH) return;
+            
+            int[] buffer = sharedBuffer != null && sharedBuffer.length >= n ? sharedBuffer : sink.allocate(n);
+            int[] source = array;
+            int[] target = buffer;
+            for (int width = RUN_LENGTH; width < n && sink.isSorting(); width *= 2) {
+                for (int left = 0; left < n; left += 2 * width) {
+                    int middle = Math.min(left + width, n);
+                    int right = Math.min(left + 2 * width, n);
+                    if (middle == right || sink.compare(source, middle - 1, middle) <= 0) {
+                        copy(source, target, left, right, sink);
+                    } else {
+                        merge(array, source, target, left, middle, right, sink);
+                    }
+                }
+                int[] swap = source;
+                source = target;
+                target = swap;
+            }
+            
+            if (source != array) {
+                copy(source, array, 0, n, sink);
+            }
+        }
+        
+        private static void merge(int[] array, int[] source, int[] target, int left, int middle, int right,
+                                  SortEventSink sink) {
+            int i = left;
+            int j = middle;
+            for (int k = left; k < right; k++) {
+                int taken = j >= right || (i < middle && sink.compare(source, i, j) <= 0) ? i++ : j++;
+                if (target == array) {
+                    sink.updateVisualization(k, -1);
+                } else if (source == array) {
+                    sink.updateVisualization(taken, -1);
+                }
+                sink.write(target, k, sink.read(source, taken));
+            }
+        }
+        
+        private static void copy(int[] source, int[] target, int from, int to, SortEventSink sink) {
+            for (int k = from; k < to; k++) {
+                sink.write(target, k, sink.read(source, k));
+            }
+        }
+    }
+    
+    /**
+     * Least-significant-digit radix sort over the four bytes of each key. One read pass builds all
+     * four histograms; each pass then scatters by prefix sums between the array and a single
+     * buffer (ping-pong), and passes where every key shares the same byte are skipped. The sign
+     * bit is flipped so negative keys order first.
+     */
+    static class LsdRadixSort implements SortingAlgorithm {
+        private static final int RADIX = 256;
+        
+        @Override
+        public void sort(int[] array, SortEventSink sink) {
+            int n = array.length;
+            if (n < 2) return;
+            
+            int passes = sink.keyBytes();
+            int[] counts = sink.allocate(passes * RADIX);
+            for (int i = 0; i < n; i++) {
+                long key = sink.radixKey(sink.read(array, i));
+                for (int pass = 0; pass < passes; pass++) {
+                    counts[pass * RADIX + digit(key, pass * 8)]++;
+                }
+            }
+            
+            int[] buffer = sink.allocate(n);
+            int[] source = array;
+            int[] target = buffer;
+            int[] offsets = sink.allocate(RADIX);
+            for (int pass = 0; pass < passes && sink.isSorting(); pass++) {
+                int base = pass * RADIX;
+                int shift = pass * 8;
+                if (counts[base + digit(sink.radixKey(sink.read(source, 0)), shift)] == n) {
+                    continue;
+                }
+                int sum = 0;
+                for (int digit = 0; digit < RADIX; digit++) {
+                    offsets[digit] = sum;
+                    sum += counts[base + digit];
+                }
+                for (int i = 0; i < n; i++) {
+                    int value = sink.read(source, i);
+                    int destination = offsets[digit(sink.radixKey(value), shift)]++;
+                    if (target == array) {
+                        sink.updateVisualization(-1, destination);
+                    } else {
+                        sink.updateVisualization(i, -1);
+                    }
+                    sink.write(target, destination, value);
+                }
+                int[] swap = source;
+                source = target;
+                target = swap;
+            }
+            
+            if (source != array) {
+                for (int i = 0; i < n && sink.isSorting(); i++) {
+                    sink.write(array, i, sink.read(source, i));
+                }
+            }
+        }
+        
+        @Override
+        public boolean sortsLongs() {
+            return true;
+        }
+        
+        /** Eight byte passes over the keys with the sign bit flipped, so that unsigned order is signed order. */
+        @Override
+        public void sort(long[] array, SortEventSink sink) {
+            int n = array.length;
+            if (n < 2) return;
+            
+            int passes = Long.BYTES;
+            int[] counts = sink.allocate(passes * RADIX);
+            for (int i = 0; i < n; i++) {
+                long key = sink.read(array, i) ^ Long.MIN_VALUE;
+                for (int pass = 0; pass < passes; pass++) {
+                    counts[pass * RADIX + digit(key, pass * 8)]++;
+                }
+            }
+            
+            long[] buffer = sink.allocateLongs(n);
+            long[] source = array;
+            long[] target = buffer;
+            int[] offsets = sink.allocate(RADIX);
+            for (int pass = 0; pass < passes && sink.isSorting(); pass++) {
+                int base = pass * RADIX;
+                int shift = pass * 8;
+                if (counts[base + digit(sink.read(source, 0) ^ Long.MIN_VALUE, shift)] == n) {
+                    continue;
+                }
+                int sum = 0;
+                for (int digit = 0; digit < RADIX; digit++) {
+                    offsets[digit] = sum;
+                    sum += counts[base + digit];
+                }
+                for (int i = 0; i < n; i++) {
+                    long value = sink.read(source, i);
+                    int destination = offsets[digit(value ^ Long.MIN_VALUE, shift)]++;
+                    if (target == array) {
+                        sink.updateVisualization(-1, destination);
+                    } else {
+                        sink.updateVisualization(i, -1);
+                    }
+                    sink.write(target, destination, value);
+                }
+                long[] swap = source;
+                source = target;
+                target = swap;
+            }
+            
+            if (source != array) {
+                for (int i = 0; i < n && sink.isSorting(); i++) {
+                    sink.write(array, i, sink.read(source, i));
+                }
+            }
+        }
+        
+        private static int digit(long key, int shift) {
+            return (int) (key >>> shift) & 0xFF;
+        }
+    }
+    
+    /**
+     * In-place most-significant-digit radix sort (American flag sort). Each level counts one byte,
+     * then permutes keys into their buckets with swaps and recurses into each bucket on the next
+     * byte; buckets of 32 or fewer keys finish with insertion sort.
+     */
+    static class MsdRadixSort implements SortingAlgorithm {
+        private static final int RADIX = 256;
+        private static final int INSERTION_CUTOFF = 32;
+        
+        private SortEventSink sink;
+        private int[][] heads;
+        private int[][] tails;
+        
+        @Override
+        public void sort(int[] array, SortEventSink sink) {
+            this.sink = sink;
+            // One pair of bucket arrays per byte level, reused by every bucket on that level.
+            int levels = sink.keyBytes();
+            heads = new int[levels][];
+            tails = new int[levels][];
+            for (int level = 0; level < levels; level++) {
+                heads[level] = sink.allocate(RADIX);
+                tails[level] = sink.allocate(RADIX);
+            }
+            americanFlagSort(array, 0, array.length, 8 * levels - 8);
+        }
+        
+        @Override
+        public boolean sortsLongs() {
+            return true;
+        }
+        
+        /** American flag sort on the eight bytes of each key with the sign bit flipped. */
+        @Override
+        public void sort(long[] array, SortEventSink sink) {
+            this.sink = sink;
+            heads = new int[Long.BYTES][];
+            tails = new int[Long.BYTES][];
+            for (int level = 0; level < Long.BYTES; level++) {
+                heads[level] = sink.allocate(RADIX);
+                tails[level] = sink.allocate(RADIX);
+            }
+            americanFlagSort(array, 0, array.length, 8 * Long.BYTES - 8);
+        }
+        
+        private void americanFlagSort(int[] array, int from, int to, int shift) {
+            if (to - from <= INSERTION_CUTOFF) {
+                DualPivotQuickSort.insertionSort(array, from, to - 1, sink);
+                return;
+            }
+            int level = heads.length - 1 - shift / 8;
+            int[] head = heads[level];
+            int[] tail = tails[level];
+            Arrays.fill(tail, 0);
+            for (int i = from; i < to; i++) {
+                tail[digit(sink.read(array, i), shift)]++;
+            }
+            int start = from;
+            for (int digit = 0; digit < RADIX; digit++) {
+                head[digit] = start;
+                start += tail[digit];
+                tail[digit] = start;
+            }
+            
+            for (int digit = 0; digit < RADIX && sink.isSorting(); digit++) {
+                while (head[digit] < tail[digit]) {
+                    int home = digit(sink.read(array, head[digit]), shift);
+                    if (home == digit) {
+                        head[digit]++;
+                    } else {
+                        sink.updateVisualization(head[digit], head[home]);
+                        sink.swap(array, head[digit], head[home]++);
+                    }
+                }
+            }
+            
+            if (shift == 0) return;
+            int bucketStart = from;
+            for (int digit = 0; digit < RADIX && sink.isSorting(); digit++) {
+                int bucketEnd = tails[level][digit];
+                if (bucketEnd - bucketStart > 1) {
+                    americanFlagSort(array, bucketStart, bucketEnd, shift - 8);
+                }
+                bucketStart = bucketEnd;
+            }
+        }
+        
+        private int digit(int value, int shift) {
+            return (int) (sink.radixKey(value) >>> shift) & 0xFF;
+        }
+        
+        private void americanFlagSort(long[] array, int from, int to, int shift) {
+            if (to - from <= INSERTION_CUTOFF) {
+                DualPivotQuickSort.insertionSort(array, from, to - 1, sink);
+                return;
+            }
+            int level = heads.length - 1 - shift / 8;
+            int[] head = heads[level];
+            int[] tail = tails[level];
+            Arrays.fill(tail, 0);
+            for (int i = from; i < to; i++) {
+                tail[digit(sink.read(array, i), shift)]++;
+            }
+            int start = from;
+            for (int digit = 0; digit < RADIX; digit++) {
+                head[digit] = start;
+                start += tail[digit];
+                tail[digit] = start;
+            }
+            
+            for (int digit = 0; digit < RADIX && sink.isSorting(); digit++) {
+                while (head[digit] < tail[digit]) {
+                    int home = digit(sink.read(array, head[digit]), shift);
+                    if (home == digit) {
+                        head[digit]++;
+                    } else {
+                        sink.updateVisualization(head[digit], head[home]);
+                        sink.swap(array, head[digit], head[home]++);
+                    }
+                }
+            }
+            
+            if (shift == 0) return;
+            int bucketStart = from;
+            for (int digit = 0; digit < RADIX && sink.isSorting(); digit++) {
+                int bucketEnd = tails[level][digit];
+                if (bucketEnd - bucketStart > 1) {
+                    americanFlagSort(array, bucketStart, bucketEnd, shift - 8);
+                }
+                bucketStart = bucketEnd;
+            }
+        }
+        
+        private static int digit(long value, int shift) {
+            return (int) ((value ^ Long.MIN_VALUE) >>> shift) & 0xFF;
+        }
+    }
+    
+    /**
+     * Fork/join merge sort: both halves are sorted in parallel, ping-ponging between the array and
+     * one auxiliary buffer, and large merges are split in parallel by binary search. Each task
+     * reports the range it owns so the panel can colour ranges by worker thread.
+     */
+    static class ParallelMergeSort implements SortingAlgorithm {
+        static final int MAX_SEQUENTIAL_CUTOFF = 1 << 13;
+        static final int MIN_SEQUENTIAL_CUTOFF = 64;
+        private static final int INSERTION_CUTOFF = 16;
+        
+        private final ForkJoinPool pool;
+        
+        ParallelMergeSort() {
+            this(ForkJoinPool.commonPool());
+        }
+        
+        ParallelMergeSort(ForkJoinPool pool) {
+            this.pool = pool;
+        }
+        
+        @Override
+        public void sort(int[] array, SortEventSink sink) {
+            if (array.length < 2) return;
+            // Small enough to show several workers on screen, large enough to amortise task overhead.
+            int cutoff = Math.max(MIN_SEQUENTIAL_CUTOFF,
+                Math.min(MAX_SEQUENTIAL_CUTOFF, array.length / (4 * pool.getParallelism())));
+            SortEventSink shared = sink.concurrentView();
+            pool.invoke(new SortTask(array, shared.allocate(array.length), 0, array.length, true, cutoff, shared));
+            shared.assignWorker(0, array.length, -1);
+        }
+        
+        static int workerId() {
+            Thread thread = Thread.currentThread();
+            return thread instanceof ForkJoinWorkerThread ? ((ForkJoinWorkerThread) thread).getPoolIndex() : 0;
+        }
+        
+        /** Sorts {@code [from, to)}, leaving the result in the main array or in the buffer. */
+        static final class SortTask extends RecursiveAction {
+            private final int[] array;
+            private final int[] buffer;
+            private final int from;
+            private final int to;
+            private final boolean intoArray;
+            private final int cutoff;
+            private final SortEventSink sink;
+            
+            SortTask(int[] array, int[] buffer, int from, int to, boolean intoArray, int cutoff, SortEventSink sink) {
+                this.array = array;
+                this.buffer = buffer;
+                this.from = from;
+                this.to = to;
+                this.intoArray = intoArray;
+                this.cutoff = cutoff;
+                this.sink = sink;
+            }
+            
+            @Override
+            protected void compute() {
+                if (!sink.isSorting()) return;
+                sink.assignWorker(from, to, workerId());
+                if (to - from <= INSERTION_CUTOFF) {
+                    DualPivotQuickSort.insertionSort(array, from, to - 1, sink);
+                    if (!intoArray) {
+                        for (int i = from; i < to; i++) {
+                            sink.write(buffer, i, sink.read(array, i));
+                        }
+                    }
+                    return;
+                }
+                int middle = (from + to) >>> 1;
+                SortTask left = new SortTask(array, buffer, from, middle, !intoArray, cutoff, sink);
+                SortTask right = new SortTask(array, buffer, middle, to, !intoArray, cutoff, sink);
+                if (to - from <= cutoff) {
+                    left.compute();
+                    right.compute();
+                } else {
+                    invokeAll(left, right);
+                }
+                if (!sink.isSorting()) return;
+                sink.assignWorker(from, to, workerId());
+                int[] source = intoArray ? buffer : array;
+                int[] target = intoArray ? array : buffer;
+                new MergeTask(array, source, target, from, middle, middle, to, from, to - from <= cutoff ? Integer.MAX_VALUE : cutoff, sink).compute();
+            }
+        }
+        
+        /**
+         * Stable merge of {@code source[lo1, hi1)} and {@code source[lo2, hi2)} into {@code target} at
+         * {@code out}. Above the cutoff the larger run is split at its median and the other run at the
+         * matching binary-search position, and the two halves merge in parallel.
+         */
+        static final class MergeTask extends RecursiveAction {
+            private final int[] array;
+            private final int[] source;
+            private final int[] target;
+            private final int lo1, hi1, lo2, hi2, out;
+            private final int cutoff;
+            private final SortEventSink sink;
+            
+            MergeTask(int[] array, int[] source, int[] target, int lo1, int hi1, int lo2, int hi2, int out,
+                      int cutoff, SortEventSink sink) {
+                this.array = array;
+                this.source = source;
+                this.target = target;
+                this.lo1 = lo1;
+                this.hi1 = hi1;
+                this.lo2 = lo2;
+                this.hi2 = hi2;
+                this.out = out;
+                this.cutoff = cutoff;
+                this.sink = sink;
+            }
+            
+            @Override
+            protected void compute() {
+                int n1 = hi1 - lo1;
+                int n2 = hi2 - lo2;
+                if (n1 + n2 <= cutoff || n1 == 0 || n2 == 0) {
+                    mergeSequential();
+                    return;
+                }
+                int split1;
+                int split2;
+                if (n1 >= n2) {
+                    split1 = (lo1 + hi1) >>> 1;
+                    split2 = lowerBound(source, lo2, hi2, sink.read(source, split1), sink);
+                } else {
+                    split2 = (lo2 + hi2) >>> 1;
+                    split1 = upperBound(source, lo1, hi1, sink.read(source, split2), sink);
+                }
+                int outSplit = out + (split1 - lo1) + (split2 - lo2);
+                invokeAll(
+                    new MergeTask(array, source, target, lo1, split1, lo2, split2, out, cutoff, sink),
+                    new MergeTask(array, source, target, split1, hi1, split2, hi2, outSplit, cutoff, sink));
+            }
+            
+            private void mergeSequential() {
+                int i = lo1;
+                int j = lo2;
+                int k = out;
+                while (i < hi1 && j < hi2) {
+                    move(k++, sink.compare(source, i, j) <= 0 ? i++ : j++);
+                }
+                while (i < hi1) {
+                    move(k++, i++);
+                }
+                while (j < hi2) {
+                    move(k++, j++);
+                }
+            }
+            
+            private void move(int index, int from) {
+                sink.write(target, index, sink.read(source, from));
+            }
+        }
+        
+        /** First index in {@code [from, to)} whose value is {@code >= key}. */
+        static int lowerBound(int[] array, int from, int to, int key, SortEventSink sink) {
+            while (from < to) {
+                int middle = (from + to) >>> 1;
+                if (sink.compare(sink.read(array, middle), key) < 0) {
+                    from = middle + 1;
+                } else {
+                    to = middle;
+                }
+            }
+            return from;
+        }
+        
+        /** First index in {@code [from, to)} whose value is {@code > key}. */
+        static int upperBound(int[] array, int from, int to, int key, SortEventSink sink) {
+            while (from < to) {
+                int middle = (from + to) >>> 1;
+                if (sink.compare(sink.read(array, middle), key) <= 0) {
+                    from = middle + 1;
+                } else {
+                    to = middle;
+                }
+            }
+            return from;
+        }
+    }
+    
+    /**
+     * Fork/join quicksort: each partition step forks both sides while they are larger than the
+     * sequential cutoff. Uses a median-of-three pivot with Hoare partitioning, so sorted input and
+     * runs of equal keys still split evenly. Tasks own their range in the panel while they run.
+     */
+    static class ParallelQuickSort implements SortingAlgorithm {
+        private static final int INSERTION_CUTOFF = 16;
+        
+        private final ForkJoinPool pool;
+        
+        ParallelQuickSort() {
+            this(ForkJoinPool.commonPool());
+        }
+        
+        ParallelQuickSort(ForkJoinPool pool) {
+            this.pool = pool;
+        }
+        
+        @Override
+        public void sort(int[] array, SortEventSink sink) {
+            if (array.length < 2) return;
+            int cutoff = Math.max(ParallelMergeSort.MIN_SEQUENTIAL_CUTOFF,
+                Math.min(ParallelMergeSort.MAX_SEQUENTIAL_CUTOFF, array.length / (4 * pool.getParallelism())));
+            pool.invoke(new QuickSortTask(array, 0, array.length - 1, cutoff, sink.concurrentView()));
+        }
+        
+        static final class QuickSortTask extends RecursiveAction {
+            private final int[] array;
+            private final int low;
+            private final int high;
+            private final int cutoff;
+            private final SortEventSink sink;
+            
+            QuickSortTask(int[] array, int low, int high, int cutoff, SortEventSink sink) {
+                this.array = array;
+                this.low = low;
+                this.high = high;
+                this.cutoff = cutoff;
+                this.sink = sink;
+            }
+            
+            @Override
+            protected void compute() {
+                if (!sink.isSorting()) return;
+                sink.assignWorker(low, high + 1, ParallelMergeSort.workerId());
+                if (high - low < cutoff) {
+                    sortSequential(low, high);
+                    sink.assignWorker(low, high + 1, -1);
+                    return;
+                }
+                int split = partition(low, high);
+                invokeAll(new QuickSortTask(array, low, split, cutoff, sink),
+                    new QuickSortTask(array, split + 1, high, cutoff, sink));
+            }
+            
+            private void sortSequential(int low, int high) {
+                while (high - low > INSERTION_CUTOFF && sink.isSorting()) {
+                    int split = partition(low, high);
+                    // Recurse into the smaller side and loop on the larger to bound the stack depth.
+                    if (split - low < high - split) {
+                        sortSequential(low, split);
+                        low = split + 1;
+                    } else {
+                        sortSequential(split + 1, high);
+                        high = split;
+                    }
+                }
+                DualPivotQuickSort.insertionSort(array, low, high, sink);
+            }
+            
+            /** Hoare partition around the median of three; returns j with [low, j] <= pivot <= [j + 1, high]. */
+            private int partition(int low, int high) {
+                int middle = (low + high) >>> 1;
+                if (sink.compare(array, middle, low) < 0) sink.swap(array, low, middle);
+                if (sink.compare(array, high, low) < 0) sink.swap(array, low, high);
+                if (sink.compare(array, high, middle) < 0) sink.swap(array, middle, high);
+                int pivot = sink.read(array, middle);
+                sink.updateVisualization(low, high, -1, middle);
+                
+                int i = low - 1;
+                int j = high + 1;
+                while (true) {
+                    do {
+                        i++;
+                    } while (sink.compare(sink.read(array, i), pivot) < 0);
+                    do {
+                        j--;
+                    } while (sink.compare(sink.read(array, j), pivot) > 0);
+                    if (i >= j) {
+                        return j;
+                    }
+                    sink.swap(array, i, j);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Comparator layout of the sorting-network engines. A stage is named by {@code span} and
+     * {@code distance}: bitonic merges of size {@code span} (2, 4, ...) with the mirrored first
+     * stage then distances {@code span / 4} down to 1, and Batcher's odd-even merges of runs of
+     * {@code span} (1, 2, ...) with distances {@code span} down to 1. Every comparator puts the
+     * smaller key at the lower index, so for lengths that are not a power of two the missing keys
+     * act as +infinity and comparators reaching past the end are dropped.
+     */
+    static final class SortingNetworks {
+        static final int BITONIC = 0;
+        static final int ODD_EVEN = 1;
+        
+        private SortingNetworks() {
+        }
+        
+        /** The index compared with {@code i} in the stage, or -1 if {@code i} sits it out. */
+        static int partner(int network, int span, int distance, int i, int n) {
+            int other;
+            if (network == BITONIC) {
+                other = i ^ (distance == span >> 1 ? span - 1 : distance);
+            } else {
+                // Span and distance are powers of two, so the divisions reduce to masks.
+                int offset = i - (distance & (span - 1));
+                if (offset < 0) {
+                    return -1;
+                }
+                other = (offset & distance) == 0 ? i + distance : i - distance;
+                int low = Math.min(i, other);
+                if (((low ^ (low + distance)) & -(2 * span)) != 0) {
+                    return -1;
+                }
+            }
+            return other >= 0 && other < n ? other : -1;
+        }
+        
+        /** The stages for {@code n} keys in order, as {@code {span, distance}} pairs. */
+        static List<int[]> stages(int network, int n) {
+            List<int[]> stages = new ArrayList<>();
+            int size = Integer.highestOneBit(Math.max(1, n - 1)) << 1;
+            if (network == BITONIC) {
+                for (int span = 2; span <= size && n > 1; span <<= 1) {
+                    for (int distance = span >> 1; distance > 0; distance >>= 1) {
+                        stages.add(new int[] {span, distance});
+                    }
+                }
+            } else {
+                for (int span = 1; span < size; span <<= 1) {
+                    for (int distance = span; distance > 0; distance >>= 1) {
+                        stages.add(new int[] {span, distance});
+                    }
+                }
+            }
+            return stages;
+        }
+    }
+    
+    /**
+     * Bitonic or odd-even merge sort. The comparators of a stage touch disjoint keys, so each
+     * stage is split into chunks that run as fork/join tasks, joined before the next stage; which
+     * keys are compared never depends on the data, only on the length. The sink sees one
+     * {@link SortEventSink#compareStage} per stage, followed by that stage's swaps, so the
+     * visualizer draws a whole stage at a time. O(n log² n) comparisons on every input.
+     */
+    static class NetworkSort implements SortingAlgorithm {
+        private final int network;
+        private final ForkJoinPool pool;
+        
+        NetworkSort(int network) {
+            this(network, ForkJoinPool.commonPool());
+        }
+        
+        NetworkSort(int network, ForkJoinPool pool) {
+            this.network = network;
+            this.pool = pool;
+        }
+        
+        @Override
+        public void sort(int[] array, SortEventSink sink) {
+            int n = array.length;
+            SortEventSink shared = sink.concurrentView();
+            int chunk = Math.max(ParallelMergeSort.MIN_SEQUENTIAL_CUTOFF,
+                Math.min(ParallelMergeSort.MAX_SEQUENTIAL_CUTOFF, n / (4 * pool.getParallelism())));
+            for (int[] stage : SortingNetworks.stages(network, n)) {
+                if (!shared.isSorting()) return;
+                shared.compareStage(network, stage[0], stage[1]);
+                StageTask task = new StageTask(array, 0, n, chunk, network, stage[0], stage[1], shared);
+                if (n <= chunk) {
+                    task.compute();
+                } else {
+                    pool.invoke(task);
+                }
+            }
+        }
+        
+        static final class StageTask extends RecursiveAction {
+            private final int[] array;
+            private final int from;
+            private final int to;
+            private final int chunk;
+            private final int network;
+            private final int span;
+            private final int distance;
+            private final SortEventSink sink;
+            
+            StageTask(int[] array, int from, int to, int chunk, int network, int span, int distance, SortEventSink sink) {
+                this.array = array;
+                this.from = from;
+                this.to = to;
+                this.chunk = chunk;
+                this.network = network;
+                this.span = span;
+                this.distance = distance;
+                this.sink = sink;
+            }
+            
+            // Runs the comparators whose lower index lies in [from, to); their upper keys may be anywhere.
+            @Override
+            protected void compute() {
+                if (to - from > chunk) {
+                    int middle = (from + to) >>> 1;
+                    invokeAll(new StageTask(array, from, middle, chunk, network, span, distance, sink),
+                        new StageTask(array, middle, to, chunk, network, span, distance, sink));
+                    return;
+                }
+                boolean raw = sink.rawAccess();
+                int n = array.length;
+                sink.assignWorker(from, to, ParallelMergeSort.workerId());
+                for (int i = from; i < to && sink.isSorting(); i++) {
+                    int other = SortingNetworks.partner(network, span, distance, i, n);
+                    if (other <= i) continue;
+                    if (raw) {
+                        int a = array[i];
+                        int b = array[other];
+                        array[i] = Math.min(a, b);
+                        array[other] = Math.max(a, b);
+                    } else if (sink.compare(array, i, other) > 0) {
+                        sink.swap(array, i, other);
+                    }
+                }
+                sink.assignWorker(from, to, -1);
+            }
+        }
+    }
+    
+    /**
+     * Times each parallel engine against its sequential counterpart on the same random input and
+     * prints speedup (T1 / Tp) and efficiency (speedup / p) for sizes from 10^4 up to a maximum.
+     */
+    static final class SpeedupReport {
+        private static final String[][] PAIRS = {{"merge", "parallel-merge"}, {"quick", "parallel-quick"}};
+        
+        private SpeedupReport() {
+        }
+        
+        static void run(int maxSize, PrintStream out) {
+            int parallelism = ForkJoinPool.getCommonPoolParallelism();
+            out.printf("Fork/join parallelism p = %d%n", parallelism);
+            out.printf("%-16s %12s %14s %14s %9s %11s%n",
+                "engine", "size", "sequential ms", "parallel ms", "speedup", "efficiency");
+            for (long size = 10_000; size <= maxSize; size *= 10) {
+                int[] input = new int[(int) size];
+                SplittableRandom random = new SplittableRandom(size);
+                for (int i = 0; i < input.length; i++) {
+                    input[i] = random.nextInt();
+                }
+                int[] work = new int[input.length];
+                int warmups = size <= 1_000_000 ? 3 : 1;
+                int runs = size <= 1_000_000 ? 5 : 3;
+                for (String[] pair : PAIRS) {
+                    double sequential = medianNanos(pair[0], input, work, warmups, runs) / 1e6;
+                    double parallel = medianNanos(pair[1], input, work, warmups, runs) / 1e6;
+                    double speedup = sequential / parallel;
+                    out.printf("%-16s %,12d %14.2f %14.2f %8.2fx %10.0f%%%n",
+                        pair[1], size, sequential, parallel, speedup, 100 * speedup / parallelism);
+                }
+            }
+        }
+        
+        private static long medianNanos(String engine, int[] input, int[] work, int warmups, int runs) {
+            SortingAlgorithm algorithm = SortEngines.create(engine);
+            long[] times = new long[runs];
+            for (int run = -warmups; run < runs; run++) {
+                System.arraycopy(input, 0, work, 0, input.length);
+                long start = System.nanoTime();
+                algorithm.sort(work, HeadlessSink.INSTANCE);
+                long elapsed = System.nanoTime() - start;
+                if (run >= 0) {
+                    times[run] = elapsed;
+                }
+            }
+            Arrays.sort(times);
+            return times[runs / 2];
+        }
+    }
+    
+    /**
+     * Seeded input shapes for the panel and the headless benchmarks. Arrays are filled in chunks
+     * of {@link #CHUNK} elements, each with its own {@link SplittableRandom} split from the seed in
+     * chunk order, so the output depends only on seed and size and large arrays fill on every
+     * core. Random swaps in nearly sorted inputs stay within a chunk. The shapes are a switch
+     * rather than constant bodies so that no nestmate access pulls in the Swing outer class.
+     */
+    enum InputDistribution {
+        RANDOM("random", "Random"),
+        SORTED("sorted", "Sorted"),
+        REVERSED("reversed", "Reversed"),
+        NEARLY_SORTED("nearly-sorted", "Nearly Sorted"),
+        FEW_UNIQUE("few-unique", "Few Unique"),
+        SAWTOOTH("sawtooth", "Sawtooth"),
+        ORGAN_PIPE("organ-pipe", "Organ Pipe"),
+        ZIPF("zipf", "Zipf"),
+        GAUSSIAN("gaussian", "Gaussian");
+        
+        static final long SEED = 0x5EED_50C7L;
+        static final int CHUNK = 1 << 16;
+        static final int NEARLY_SORTED_SWAPS = 100; // one swap per this many elements
+        static final int FEW_UNIQUE_VALUES = 16;
+        static final int SAWTOOTH_TEETH = 8;
+        static final int ZIPF_RANKS = 1024;
+        static final double ZIPF_EXPONENT = 1.1;
+        
+        private static final int PARALLEL_CHUNKS = 16;
+        private static final double[] ZIPF_CDF = zipfCdf();
+        
+        final String key;
+        final String label;
+        
+        InputDistribution(String key, String label) {
+            this.key = key;
+            this.label = label;
+        }
+        
+        /** {@code size} values over the whole non-negative int range, from the default seed. */
+        int[] generate(int size) {
+            int[] array = new int[size];
+            generate(array, SEED, 0, Integer.MAX_VALUE);
+            return array;
+        }
+        
+        /** Fills {@code array} with values in {@code [origin, bound)}. */
+        void generate(int[] array, long seed, int origin, int bound) {
+            int chunks = (array.length + CHUNK - 1) / CHUNK;
+            SplittableRandom root = new SplittableRandom(seed);
+            SplittableRandom[] randoms = new SplittableRandom[chunks];
+            for (int c = 0; c < chunks; c++) {
+                randoms[c] = root.split();
+            }
+            Fill fill = new Fill(this, array, randoms, origin, bound, 0, chunks);
+            if (chunks >= PARALLEL_CHUNKS) {
+                ForkJoinPool.commonPool().invoke(fill);
+            } else {
+                fill.compute();
+            }
+        }
+        
+        void fill(int[] array, int from, int to, SplittableRandom random, int origin, int bound) {
+            int n = array.length;
+            long span = (long) bound - origin;
+            switch (this) {
+                case RANDOM:
+                    for (int i = from; i < to; i++) {
+                        array[i] = random.nextInt(origin, bound);
+                    }
+                    break;
+                case SORTED:
+                    for (int i = from; i < to; i++) {
+                        array[i] = (int) (origin + span * i / n);
+                    }
+                    break;
+                case REVERSED:
+                    for (int i = from; i < to; i++) {
+                        array[i] = (int) (origin + span * (n - 1 - i) / n);
+                    }
+                    break;
+                case NEARLY_SORTED:
+                    SORTED.fill(array, from, to, random, origin, bound);
+                    int swaps = Math.max(1, (to - from) / NEARLY_SORTED_SWAPS);
+                    for (int k = 0; k < swaps; k++) {
+                        int i = random.nextInt(from, to);
+                        int j = random.nextInt(from, to);
+                        int temp = array[i];
+                        array[i] = array[j];
+                        array[j] = temp;
+                    }
+                    break;
+                case FEW_UNIQUE:
+                    for (int i = from; i < to; i++) {
+                        array[i] = (int) (origin + span * random.nextInt(FEW_UNIQUE_VALUES) / FEW_UNIQUE_VALUES);
+                    }
+                    break;
+                case SAWTOOTH:
+                    int period = Math.max(1, (n + SAWTOOTH_TEETH - 1) / SAWTOOTH_TEETH);
+                    for (int i = from; i < to; i++) {
+                        array[i] = (int) (origin + span * (i % period) / period);
+                    }
+                    break;
+                case ORGAN_PIPE:
+                    int half = (n + 1) / 2;
+                    for (int i = from; i < to; i++) {
+                        array[i] = (int) (origin + span * Math.min(i, n - 1 - i) / half);
+                    }
+                    break;
+                case ZIPF:
+                    for (int i = from; i < to; i++) {
+                        int rank = Arrays.binarySearch(ZIPF_CDF, random.nextDouble());
+                        rank = rank < 0 ? -rank - 1 : rank;
+                        array[i] = (int) (origin + span * Math.min(rank, ZIPF_RANKS - 1) / ZIPF_RANKS);
+                    }
+                    break;
+                default:
+                    // Box-Muller, two values per draw, clamped to three standard deviations of the middle.
+                    for (int i = from; i < to; i += 2) {
+                        double radius = Math.sqrt(-2 * Math.log(1 - random.nextDouble()));
+                        double angle = 2 * Math.PI * random.nextDouble();
+                        array[i] = gaussian(radius * Math.cos(angle), origin, span);
+                        if (i + 1 < to) {
+                            array[i + 1] = gaussian(radius * Math.sin(angle), origin, span);
+                        }
+                    }
+            }
+        }
+        
+        private static int gaussian(double deviations, int origin, long span) {
+            double unit = Math.max(0, Math.min(1, 0.5 + deviations / 6));
+            return (int) Math.min(origin + span - 1, origin + (long) (span * unit));
+        }
+        
+        /** Cumulative probabilities of ranks 1..ZIPF_RANKS with weight 1 / rank^ZIPF_EXPONENT. */
+        private static double[] zipfCdf() {
+            double[] cdf = new double[ZIPF_RANKS];
+            double sum = 0;
+            for (int rank = 1; rank <= ZIPF_RANKS; rank++) {
+                sum += Math.pow(rank, -ZIPF_EXPONENT);
+                cdf[rank - 1] = sum;
+            }
+            for (int i = 0; i < cdf.length; i++) {
+                cdf[i] /= sum;
+            }
+            return cdf;
+        }
+        
+        static InputDistribution forKey(String key) {
+            for (InputDistribution distribution : values()) {
+                if (distribution.key.equals(key)) {
+                    return distribution;
+                }
+            }
+            throw new IllegalArgumentException("Unknown distribution: " + key);
+        }
+        
+        @Override
+        public String toString() {
+            return label;
+        }
+        
+        /** Fills chunks {@code [first, last)}, halving the range until it is one chunk. */
+        static final class Fill extends RecursiveAction {
+            final InputDistribution distribution;
+            final int[] array;
+            final SplittableRandom[] randoms;
+            final int origin;
+            final int bound;
+            final int first;
+            final int last;
+            
+            Fill(InputDistribution distribution, int[] array, SplittableRandom[] randoms, int origin, int bound,
+                 int first, int last) {
+                this.distribution = distribution;
+                this.array = array;
+                this.randoms = randoms;
+                this.origin = origin;
+                this.bound = bound;
+                this.first = first;
+                this.last = last;
+            }
+            
+            @Override
+            protected void compute() {
+                if (last - first > 1) {
+                    int middle = (first + last) >>> 1;
+                    invokeAll(new Fill(distribution, array, randoms, origin, bound, first, middle),
+                        new Fill(distribution, array, randoms, origin, bound, middle, last));
+                    return;
+                }
+                for (int c = first; c < last; c++) {
+                    int from = c * CHUNK;
+                    distribution.fill(array, from, Math.min(array.length, from + CHUNK), randoms[c], origin, bound);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Key types the engines can sort, with every operation still reaching the sink. Float keys
+     * become ints whose signed order is {@link Float#compare}'s (NaN last, -0.0 before 0.0), are
+     * sorted in place by the int engine and turned back into floats. Long keys are sorted in place
+     * by the engines' 64-bit forms, and doubles likewise after the same mapping to longs, so the
+     * metrics, traces and cache simulation of all four are those of the keys. Engines without a
+     * 64-bit form (see {@link SortingAlgorithm#sortsLongs}) sort longs and doubles indirectly, as
+     * the "-indirect" types always do: the engine sorts the indices {@code 0..n-1} through an
+     * {@link IndirectKeySink}, then the keys are gathered in index order, so the sink sees the
+     * index permutation's reads, writes and allocations. NaN bit patterns survive every path.
+     */
+    enum KeyType {
+        INT("int"),
+        LONG("long"),
+        DOUBLE("double"),
+        FLOAT("float"),
+        LONG_INDIRECT("long-indirect"),
+        DOUBLE_INDIRECT("double-indirect");
+        
+        // Generated ints are recentred on this value so that keys are negative as well as positive.
+        private static final int HALF = 1 << 30;
+        private static final long LONG_SPREAD = 0x9E3779B1L;
+        
+        final String key;
+        
+        KeyType(String key) {
+            this.key = key;
+        }
+        
+        static KeyType forKey(String key) {
+            for (KeyType type : values()) {
+                if (type.key.equals(key)) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("Unknown key type: " + key);
+        }
+        
+        /**
+         * Keys of this type in the same order, with the same ties, as non-negative {@code values}:
+         * longs spread over the full 64 bits, floating-point keys over [-1, 1).
+         */
+        Object keys(int[] values) {
+            switch (this) {
+                case LONG:
+                case LONG_INDIRECT: {
+                    long[] keys = new long[values.length];
+                    for (int i = 0; i < keys.length; i++) {
+                        keys[i] = ((long) values[i] - HALF) * LONG_SPREAD;
+                    }
+                    return keys;
+                }
+                case DOUBLE:
+                case DOUBLE_INDIRECT: {
+                    double[] keys = new double[values.length];
+                    for (int i = 0; i < keys.length; i++) {
+                        keys[i] = (values[i] - HALF) / (double) HALF;
+                    }
+                    return keys;
+                }
+                case FLOAT: {
+                    float[] keys = new float[values.length];
+                    for (int i = 0; i < keys.length; i++) {
+                        keys[i] = (float) ((values[i] - HALF) / (double) HALF);
+                    }
+                    return keys;
+                }
+                default:
+                    return values.clone();
+            }
+        }
+        
+        /** An empty array of this type with room for {@code length} keys. */
+        Object allocate(int length) {
+            switch (this) {
+                case LONG:
+                case LONG_INDIRECT:
+                    return new long[length];
+                case DOUBLE:
+                case DOUBLE_INDIRECT:
+                    return new double[length];
+                case FLOAT:
+                    return new float[length];
+                default:
+                    return new int[length];
+            }
+        }
+        
+        /** The type these keys are sorted as: long and double keys go indirect on engines without a 64-bit form. */
+        KeyType sortedAs(SortingAlgorithm algorithm) {
+            if (this == LONG && !algorithm.sortsLongs()) {
+                return LONG_INDIRECT;
+            }
+            if (this == DOUBLE && !algorithm.sortsLongs()) {
+                return DOUBLE_INDIRECT;
+            }
+            return this;
+        }
+        
+        void sort(Object keys, SortingAlgorithm algorithm, SortEventSink sink) {
+            switch (sortedAs(algorithm)) {
+                case LONG:
+                    algorithm.sort((long[]) keys, sink);
+                    break;
+                case DOUBLE:
+                    sortDirect((double[]) keys, algorithm, sink);
+                    break;
+                case LONG_INDIRECT:
+                    sortIndirect((long[]) keys, algorithm, sink);
+                    break;
+                case DOUBLE_INDIRECT:
+                    sortIndirect((double[]) keys, algorithm, sink);
+                    break;
+                case FLOAT:
+                    sort((float[]) keys, algorithm, sink);
+                    break;
+                default:
+                    algorithm.sort((int[]) keys, sink);
+            }
+        }
+        
+        static void sortIndirect(long[] keys, SortingAlgorithm algorithm, SortEventSink sink) {
+            int[] order = sortedOrder(keys, algorithm, sink);
+            long[] sorted = new long[keys.length];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = keys[order[i]];
+            }
+            System.arraycopy(sorted, 0, keys, 0, sorted.length);
+        }
+        
+        static void sortIndirect(double[] keys, SortingAlgorithm algorithm, SortEventSink sink) {
+            long[] bits = new long[keys.length];
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] = sortableBits(keys[i]);
+            }
+            int[] order = sortedOrder(bits, algorithm, sink);
+            double[] sorted = new double[keys.length];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = keys[order[i]];
+            }
+            System.arraycopy(sorted, 0, keys, 0, sorted.length);
+        }
+        
+        private static void sortDirect(double[] keys, SortingAlgorithm algorithm, SortEventSink sink) {
+            long[] bits = new long[keys.length];
+            int nans = 0;
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] = sortableBits(keys[i]);
+                if (keys[i] != keys[i]) nans++;
+            }
+            double[] nanValues = new double[nans];
+            for (int i = 0, next = 0; next < nans; i++) {
+                if (keys[i] != keys[i]) nanValues[next++] = keys[i];
+            }
+            algorithm.sort(bits, sink);
+            for (int i = 0, next = 0; i < bits.length; i++) {
+                double value = fromSortableBits(bits[i]);
+                keys[i] = value != value ? nanValues[next++] : value;
+            }
+        }
+        
+        static void sort(float[] keys, SortingAlgorithm algorithm, SortEventSink sink) {
+            int[] bits = new int[keys.length];
+            int nans = 0;
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] = sortableBits(keys[i]);
+                if (keys[i] != keys[i]) nans++;
+            }
+            // The sortable form has one canonical NaN; keep the originals to put back in its place.
+            float[] nanValues = new float[nans];
+            for (int i = 0, next = 0; next < nans; i++) {
+                if (keys[i] != keys[i]) nanValues[next++] = keys[i];
+            }
+            algorithm.sort(bits, sink);
+            for (int i = 0, next = 0; i < bits.length; i++) {
+                float value = fromSortableBits(bits[i]);
+                keys[i] = value != value ? nanValues[next++] : value;
+            }
+        }
+        
+        private static int[] sortedOrder(long[] keys, SortingAlgorithm algorithm, SortEventSink sink) {
+            int[] order = sink.allocate(keys.length);
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            algorithm.sort(order, new IndirectKeySink(keys, sink));
+            return order;
+        }
+        
+        /** A long whose signed order is {@link Double#compare}'s order of the values. */
+        static long sortableBits(double value) {
+            long bits = Double.doubleToLongBits(value);
+            return bits ^ (bits >> 63 & Long.MAX_VALUE);
+        }
+        
+        static double fromSortableBits(long bits) {
+            return Double.longBitsToDouble(bits ^ (bits >> 63 & Long.MAX_VALUE));
+        }
+        
+        /** An int whose signed order is {@link Float#compare}'s order of the values. */
+        static int sortableBits(float value) {
+            int bits = Float.floatToIntBits(value);
+            return bits ^ (bits >> 31 & Integer.MAX_VALUE);
+        }
+        
+        static float fromSortableBits(int bits) {
+            return Float.intBitsToFloat(bits ^ (bits >> 31 & Integer.MAX_VALUE));
+        }
+    }
+    
+    /**
+     * Headless benchmark sweep over engine x distribution x size. Each cell runs a pinned number
+     * of warm-up sorts, then times its repetitions through {@link HeadlessSink} and counts one
+     * more run through {@link MeteredSink}. Cells run in parallel on a fixed pool, except the
+     * fork/join engines, which run one at a time afterwards so they get every core. Only nested
+     * classes are touched, so launching {@code SortingVisualizerComplete$BenchSweep} directly
+     * loads no AWT classes at all.
+     */
+    static final class BenchSweep {
+        private static final int QUADRATIC_LIMIT = 10_000;
+        private static final String USAGE = "usage: --bench [--engines a,b] [--keys int,long,double,float]"
+            + " [--distributions a,b] [--sizes n,m]"
+            + " [--reps n] [--warmup n] [--threads n] [--out prefix] [--cache default|LINExSETSxWAYS@CYCLES,...]"
+            + " [--memory-cycles n]";
+        
+        private final List<String> engines = new ArrayList<>();
+        private final List<KeyType> keyTypes = new ArrayList<>();
+        private final List<InputDistribution> distributions = new ArrayList<>();
+        private final List<Integer> sizes = new ArrayList<>();
+        private int reps = 10;
+        private int warmup = 3;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private String out = "bench-results";
+        private String cacheSpec;
+        private int memoryCycles = CacheSimulator.DEFAULT_MEMORY_CYCLES;
+        private CacheSimulator cache;
+        
+        private BenchSweep() {
+        }
+        
+        public static void main(String[] args) throws Exception {
+            System.setProperty("java.awt.headless", "true");
+            BenchSweep sweep;
+            try {
+                sweep = parse(args);
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                System.err.println(USAGE);
+                System.exit(2);
+                return;
+            }
+            sweep.run(System.out);
+        }
+        
+        static BenchSweep parse(String[] args) {
+            BenchSweep sweep = new BenchSweep();
+            for (int i = 0; i < args.length; i++) {
+                String flag = args[i];
+                if (flag.equals("--bench")) continue;
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + flag);
+                }
+                String value = args[++i];
+                switch (flag) {
+                    case "--engines":
+                        for (String engine : value.split(",")) {
+                            SortEngines.create(engine);
+                            sweep.engines.add(engine);
+                        }
+                        break;
+                    case "--keys":
+                        for (String key : value.split(",")) {
+                            sweep.keyTypes.add(KeyType.forKey(key));
+                        }
+                        break;
+                    case "--distributions":
+                        for (String key : value.split(",")) {
+                            sweep.distributions.add(InputDistribution.forKey(key));
+                        }
+                        break;
+                    case "--sizes":
+                        for (String size : value.split(",")) {
+                            sweep.sizes.add(Integer.parseInt(size));
+                        }
+                        break;
+                    case "--reps":
+                        sweep.reps = Math.max(1, Integer.parseInt(value));
+                        break;
+                    case "--warmup":
+                        sweep.warmup = Math.max(0, Integer.parseInt(value));
+                        break;
+                    case "--threads":
+                        sweep.threads = Math.max(1, Integer.parseInt(value));
+                        break;
+                    case "--out":
+                        sweep.out = value;
+                        break;
+                    case "--cache":
+                        sweep.cacheSpec = value;
+                        break;
+                    case "--memory-cycles":
+                        sweep.memoryCycles = Integer.parseInt(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + flag);
+                }
+            }
+            if (sweep.engines.isEmpty()) {
+                sweep.engines.addAll(Arrays.asList(SortEngines.names()));
+            }
+            if (sweep.keyTypes.isEmpty()) {
+                sweep.keyTypes.add(KeyType.INT);
+            }
+            if (sweep.distributions.isEmpty()) {
+                sweep.distributions.addAll(Arrays.asList(InputDistribution.values()));
+            }
+            if (sweep.sizes.isEmpty()) {
+                sweep.sizes.addAll(Arrays.asList(1_000, 10_000, 100_000));
+            }
+            if (sweep.cacheSpec != null) {
+                sweep.cache = CacheSimulator.parse(sweep.cacheSpec, sweep.memoryCycles);
+            }
+            return sweep;
+        }
+        
+        void run(PrintStream log) throws IOException, InterruptedException {
+            List<Cell> pooled = new ArrayList<>();
+            List<Cell> exclusive = new ArrayList<>();
+            for (String engine : engines) {
+                for (KeyType keys : keyTypes) {
+                    for (InputDistribution distribution : distributions) {
+                        for (int size : sizes) {
+                            if (size > QUADRATIC_LIMIT && isQuadratic(engine)) continue;
+                            // auto may pick parallel merge sort for large inputs
+                            boolean forks = engine.startsWith("parallel-") || engine.equals("auto");
+                            (forks ? exclusive : pooled).add(new Cell(engine, keys, distribution, size, warmup, reps,
+                                forks, cache == null ? null : cache.fresh(), log));
+                        }
+                    }
+                }
+            }
+            log.printf("%d cells, %d warm-up + %d timed runs each, %d threads%n", pooled.size() + exclusive.size(),
+                warmup, reps, threads);
+            
+            AtomicInteger next = new AtomicInteger();
+            Runnable worker = new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = next.getAndIncrement(); i < pooled.size(); i = next.getAndIncrement()) {
+                        pooled.get(i).run();
+                    }
+                }
+            };
+            List<Thread> workers = new ArrayList<>();
+            for (int i = 0; i < Math.min(threads, pooled.size()); i++) {
+                workers.add(cellThread(worker));
+            }
+            for (Thread thread : workers) {
+                thread.start();
+            }
+            for (Thread thread : workers) {
+                thread.join();
+            }
+            for (Cell cell : exclusive) {
+                Thread thread = cellThread(cell);
+                thread.start();
+                thread.join();
+            }
+            
+            List<Cell> cells = new ArrayList<>(pooled);
+            cells.addAll(exclusive);
+            Path csv = Paths.get(out + ".csv");
+            Path json = Paths.get(out + ".json");
+            writeCsv(cells, csv);
+            writeJson(cells, json);
+            log.println("Wrote " + csv + " and " + json);
+        }
+        
+        private static boolean isQuadratic(String engine) {
+            return engine.equals("bubble") || engine.equals("selection") || engine.equals("insertion");
+        }
+        
+        // Default-sized stacks are enough: quick sort recurses into its smaller side and the other
+        // recursive engines are depth-limited or logarithmic. No lambdas here: on JDK 15+ each one is
+        // a nestmate hidden class, which loads the outer JFrame class.
+        static Thread cellThread(Runnable task) {
+            Thread thread = new Thread(task, "bench-cell");
+            thread.setDaemon(true);
+            return thread;
+        }
+        
+        private void writeCsv(List<Cell> cells, Path file) throws IOException {
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+                writer.println("engine,keys,distribution,size,warmup,reps,median_ns,p99_ns,min_ns,comparisons,swaps,reads,"
+                    + "writes,allocations,allocated_bytes,jvm_allocated_bytes,cache_accesses,l1_misses,llc_misses,"
+                    + "stall_cycles,error");
+                for (Cell cell : cells) {
+                    SortMetrics m = cell.metrics;
+                    writer.printf("%s,%s,%s,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%s,%s%n", cell.engine,
+                        cell.sortedAs.key, cell.distribution.key, cell.size, warmup, reps, cell.median, cell.p99, cell.min,
+                        m.comparisons(), m.swaps(), m.reads(), m.writes(), m.allocations(), m.allocatedBytes(),
+                        cell.jvmAllocatedBytes, SortMetrics.cacheCsv(m.cache()), cell.error == null ? "" : csvText(cell.error));
+                }
+            }
+        }
+        
+        private void writeJson(List<Cell> cells, Path file) throws IOException {
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+                writer.printf("{\"warmup\": %d, \"reps\": %d, \"threads\": %d, \"cells\": [%n", warmup, reps, threads);
+                for (int i = 0; i < cells.size(); i++) {
+                    Cell cell = cells.get(i);
+                    SortMetrics m = cell.metrics;
+                    writer.printf("  {\"engine\": \"%s\", \"keys\": \"%s\", \"distribution\": \"%s\", \"size\": %d,"
+                            + " \"medianNs\": %d,"
+                            + " \"p99Ns\": %d, \"minNs\": %d, \"comparisons\": %d, \"swaps\": %d, \"reads\": %d,"
+                            + " \"writes\": %d, \"allocations\": %d, \"allocatedBytes\": %d, \"jvmAllocatedBytes\": %d,"
+                            + " \"cache\": %s, \"error\": %s}%s%n",
+                        cell.engine, cell.sortedAs.key, cell.distribution.key, cell.size, cell.median, cell.p99, cell.min,
+                        m.comparisons(), m.swaps(), m.reads(), m.writes(), m.allocations(), m.allocatedBytes(),
+                        cell.jvmAllocatedBytes, cacheJson(m.cache()),
+                        cell.error == null ? "null" : jsonText(cell.error),
+                        i + 1 < cells.size() ? "," : "");
+                }
+                writer.println("]}");
+            }
+        }
+        
+        // Exception messages can hold commas, quotes and line breaks.
+        private static String csvText(String text) {
+            text = text.replace('\n', ' ').replace('\r', ' ');
+            return text.indexOf(',') < 0 && text.indexOf('"') < 0 ? text : "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        
+        private static String jsonText(String text) {
+            return "\"" + text.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n").replace("\r", "\\r")
+                .replace("\t", "\\t") + "\"";
+        }
+        
+        private static String cacheJson(CacheSimulator cache) {
+            if (cache == null) {
+                return "null";
+            }
+            StringBuilder json = new StringBuilder("{\"accesses\": ").append(cache.accesses()).append(", \"levels\": [");
+            for (int i = 0; i < cache.levelCount(); i++) {
+                CacheSimulator.Level level = cache.level(i);
+                json.append(i > 0 ? ", " : "").append(String.format(
+                    "{\"name\": \"%s\", \"lineBytes\": %d, \"sets\": %d, \"ways\": %d, \"hits\": %d, \"misses\": %d}",
+                    level.name, level.lineBytes, level.sets, level.ways, level.hits, level.misses));
+            }
+            return json.append("], \"stallCycles\": ").append(cache.stallCycles()).append('}').toString();
+        }
+        
+        /** Bytes allocated so far by the current thread, or by every live thread; -1 if the JVM cannot tell. */
+        static long allocatedBytes(boolean allThreads) {
+            java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory.getThreadMXBean();
+            if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+                return -1;
+            }
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if (!allThreads) {
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+            long total = 0;
+            for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+                total += Math.max(0, bytes);
+            }
+            return total;
+        }
+        
+        static final class Cell implements Runnable {
+            final String engine;
+            final KeyType keys;
+            final InputDistribution distribution;
+            final int size;
+            final int warmup;
+            final int reps;
+            final boolean allThreads;
+            final CacheSimulator cache;
+            final PrintStream log;
+            final SortMetrics metrics;
+            KeyType sortedAs;
+            long median = -1;
+            long p99 = -1;
+            long min = -1;
+            long jvmAllocatedBytes = -1;
+            String error;
+            
+            /**
+             * {@code allThreads} attributes every thread's allocations to the run, for engines that fork;
+             * a non-null {@code cache} simulates the metered run's accesses.
+             */
+            Cell(String engine, KeyType keys, InputDistribution distribution, int size, int warmup, int reps,
+                 boolean allThreads, CacheSimulator cache, PrintStream log) {
+                this.engine = engine;
+                this.keys = keys;
+                this.sortedAs = keys;
+                this.distribution = distribution;
+                this.size = size;
+                this.warmup = warmup;
+                this.reps = reps;
+                this.allThreads = allThreads;
+                this.cache = cache;
+                this.log = log;
+                this.metrics = new SortMetrics(engine, size);
+            }
+            
+            @Override
+            public void run() {
+                try {
+                    Object input = keys.keys(distribution.generate(size));
+                    Object work = keys.allocate(size);
+                    SortingAlgorithm algorithm = SortEngines.create(engine);
+                    sortedAs = keys.sortedAs(algorithm);
+                    long[] times = new long[reps];
+                    long[] allocated = new long[reps];
+                    for (int run = -warmup; run < reps; run++) {
+                        System.arraycopy(input, 0, work, 0, size);
+                        long bytes = allocatedBytes(allThreads);
+                        long start = System.nanoTime();
+                        keys.sort(work, algorithm, HeadlessSink.INSTANCE);
+                        long elapsed = System.nanoTime() - start;
+                        if (run >= 0) {
+                            times[run] = elapsed;
+                            allocated[run] = bytes < 0 ? -1 : allocatedBytes(allThreads) - bytes;
+                        }
+                    }
+                    System.arraycopy(input, 0, work, 0, size);
+                    SortEventSink counted = HeadlessSink.INSTANCE;
+                    if (cache != null) {
+                        counted = new CacheSimSink(counted, cache, null);
+                        metrics.setCache(cache);
+                    }
+                    keys.sort(work, SortEngines.create(engine), new MeteredSink(counted, metrics));
+                    Arrays.sort(times);
+                    Arrays.sort(allocated);
+                    median = times[reps / 2];
+                    p99 = times[(int) Math.ceil(0.99 * reps) - 1];
+                    min = times[0];
+                    jvmAllocatedBytes = allocated[reps / 2];
+                    log.printf("%-16s %-15s %-14s %,12d  median %10.3f ms  p99 %10.3f ms%s%n", engine, sortedAs.key,
+                        distribution.key, size,
+                        median / 1e6, p99 / 1e6, cache == null ? ""
+                            : String.format("  %s miss %6.2f%%", cache.level(0).name, 100.0 * cache.level(0).missRate()));
+                } catch (RuntimeException | StackOverflowError | OutOfMemoryError e) {
+                    error = e.getMessage() == null ? e.getClass().getSimpleName()
+                        : e.getClass().getSimpleName() + ": " + e.getMessage();
+                    log.printf("%-16s %-15s %-14s %,12d  failed: %s%n", engine, sortedAs.key, distribution.key, size, error);
+                }
+            }
+        }
+    }
+    
+    /** Sink that only applies swaps and writes, for running an algorithm at native speed. */
+    static final class HeadlessSink implements SortEventSink {
+        static final HeadlessSink INSTANCE = new HeadlessSink();
+        
+        @Override
+        public boolean isSorting() {
+            return true;
+        }
+        
+        @Override
+        public void updateVisualization(int index1, int index2, int sortedIndex, int pivotIndex) {
+        }
+        
+        @Override
+        public void markSorted(int index) {
+        }
+        
+        @Override
+        public void swap(int[] array, int i, int j) {
+            int temp = array[i];
+            array[i] = array[j];
+            array[j] = temp;
+        }
+        
+        @Override
+        public void write(int[] array, int index, int value) {
+            array[index] = value;
+        }
+        
+        @Override
+        public SortEventSink concurrentView() {
+            return this;
+        }
+        
+        @Override
+        public boolean rawAccess() {
+            return true;
+        }
+    }
+    
+    /**
+     * Operation counts for one sort run. Counters are plain fields written by a single thread;
+     * parallel runs give each worker thread its own {@link #fork() part}, and the getters add the
+     * parts in, so they can be polled (approximately) while the sort is still running.
+     */
+    static final class SortMetrics {
+        private final String algorithm;
+        private final int size;
+        private final List<SortMetrics> parts = new CopyOnWriteArrayList<>();
+        long comparisons;
+        long swaps;
+        long reads;
+        long writes;
+        long allocations;
+        long allocatedBytes;
+        private volatile long elapsedNanos = -1;
+        private volatile CacheSimulator cache;
+        
+        SortMetrics(String algorithm, int size) {
+            this.algorithm = algorithm;
+            this.size = size;
+        }
+        
+        /** A new part whose counts are included in this run's totals. */
+        SortMetrics fork() {
+            SortMetrics part = new SortMetrics(algorithm, size);
+            parts.add(part);
+            return part;
+        }
+        
+        String algorithm() {
+            return algorithm;
+        }
+        
+        int size() {
+            return size;
+        }
+        
+        long comparisons() {
+            long total = comparisons;
+            for (SortMetrics part : parts) total += part.comparisons();
+            return total;
+        }
+        
+        long swaps() {
+            long total = swaps;
+            for (SortMetrics part : parts) total += part.swaps();
+            return total;
+        }
+        
+        long reads() {
+            long total = reads;
+            for (SortMetrics part : parts) total += part.reads();
+            return total;
+        }
+        
+        long writes() {
+            long total = writes;
+            for (SortMetrics part : parts) total += part.writes();
+            return total;
+        }
+        
+        long allocations() {
+            long total = allocations;
+            for (SortMetrics part : parts) total += part.allocations();
+            return total;
+        }
+        
+        long allocatedBytes() {
+            long total = allocatedBytes;
+            for (SortMetrics part : parts) total += part.allocatedBytes();
+            return total;
+        }
+        
+        /** Wall time of the sort, or -1 while it is still running. */
+        long elapsedNanos() {
+            return elapsedNanos;
+        }
+        
+        void setElapsedNanos(long elapsedNanos) {
+            this.elapsedNanos = elapsedNanos;
+        }
+        
+        /** The simulated cache the run's accesses went through, or null if it was not simulated. */
+        CacheSimulator cache() {
+            return cache;
+        }
+        
+        void setCache(CacheSimulator cache) {
+            this.cache = cache;
+        }
+        
+        String summary() {
+            String time = elapsedNanos < 0 ? "running" : String.format("%.2f ms", elapsedNanos / 1e6);
+            String text = String.format("🔍 Comparisons: %,d | 🔄 Swaps: %,d | 📖 Reads: %,d | ✏️ Writes: %,d | 🧮 Allocations: %,d (%,d bytes) | ⏱️ %s",
+                comparisons(), swaps(), reads(), writes(), allocations(), allocatedBytes(), time);
+            CacheSimulator simulated = cache;
+            if (simulated != null) {
+                text += String.format(" | 🧊 %s miss rate %.2f%%, ~%,d stall cycles", simulated.level(0).name,
+                    100.0 * simulated.level(0).missRate(), simulated.stallCycles());
+            }
+            return text;
+        }
+        
+        /** Cache columns hold the first and last level's misses and are empty for runs without a simulated cache. */
+        static String csvHeader() {
+            return "algorithm,size,comparisons,swaps,reads,writes,allocations,allocated_bytes,elapsed_ns,"
+                + "cache_accesses,l1_misses,llc_misses,stall_cycles";
+        }
+        
+        String toCsv() {
+            return String.format("%s,%d,%d,%d,%d,%d,%d,%d,%d,%s", algorithm, size, comparisons(), swaps(), reads(),
+                writes(), allocations(), allocatedBytes(), elapsedNanos, cacheCsv(cache));
+        }
+        
+        static String cacheCsv(CacheSimulator cache) {
+            if (cache == null) {
+                return ",,,";
+            }
+            return String.format("%d,%d,%d,%d", cache.accesses(), cache.level(0).misses,
+                cache.level(cache.levelCount() - 1).misses, cache.stallCycles());
+        }
+        
+        static void writeCsv(List<SortMetrics> runs, Path file) throws IOException {
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+                out.println(csvHeader());
+                for (SortMetrics run : runs) {
+                    out.println(run.toCsv());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Counts every operation into a {@link SortMetrics} and forwards it to another sink. A swap
+     * counts as two reads and two writes as well as one swap.
+     */
+    static final class MeteredSink implements SortEventSink {
+        private final SortEventSink delegate;
+        private final SortMetrics metrics;
+        
+        MeteredSink(SortEventSink delegate, SortMetrics metrics) {
+            this.delegate = delegate;
+            this.metrics = metrics;
+        }
+        
+        @Override
+        public boolean isSorting() {
+            return delegate.isSorting();
+        }
+        
+        @Override
+        public void updateVisualization(int index1, int index2, int sortedIndex, int pivotIndex) {
+            delegate.updateVisualization(index1, index2, sortedIndex, pivotIndex);
+        }
+        
+        @Override
+        public void markSorted(int index) {
+            delegate.markSorted(index);
+        }
+        
+        @Override
+        public void swap(int[] array, int i, int j) {
+            metrics.swaps++;
+            metrics.reads += 2;
+            metrics.writes += 2;
+            delegate.swap(array, i, j);
+        }
+        
+        @Override
+        public void write(int[] array, int index, int value) {
+            metrics.writes++;
+            delegate.write(array, index, value);
+        }
+        
+        @Override
+        public int read(int[] array, int index) {
+            metrics.reads++;
+            return delegate.read(array, index);
+        }
+        
+        @Override
+        public int compare(int a, int b) {
+            metrics.comparisons++;
+            return delegate.compare(a, b);
+        }
+        
+        @Override
+        public int[] allocate(int length) {
+            metrics.allocations++;
+            metrics.allocatedBytes += 4L * length;
+            return delegate.allocate(length);
+        }
+        
+        @Override
+        public void swap(long[] array, int i, int j) {
+            metrics.swaps++;
+            metrics.reads += 2;
+            metrics.writes += 2;
+            delegate.swap(array, i, j);
+        }
+        
+        @Override
+        public void write(long[] array, int index, long value) {
+            metrics.writes++;
+            delegate.write(array, index, value);
+        }
+        
+        @Override
+        public long read(long[] array, int index) {
+            metrics.reads++;
+            return delegate.read(array, index);
+        }
+        
+        @Override
+        public int compare(long a, long b) {
+            metrics.comparisons++;
+            return delegate.compare(a, b);
+        }
+        
+        @Override
+        public long[] allocateLongs(int length) {
+            metrics.allocations++;
+            metrics.allocatedBytes += 8L * length;
+            return delegate.allocateLongs(length);
+        }
+        
+        @Override
+        public int keyBytes() {
+            return delegate.keyBytes();
+        }
+        
+        @Override
+        public long radixKey(int value) {
+            return delegate.radixKey(value);
+        }
+        
+        @Override
+        public void assignWorker(int from, int to, int worker) {
+            delegate.assignWorker(from, to, worker);
+        }
+        
+        @Override
+        public void compareStage(int network, int span, int distance) {
+            delegate.compareStage(network, span, distance);
+        }
+        
+        /** Counts each calling thread into its own part of the metrics, so no counter is shared. */
+        @Override
+        public SortEventSink concurrentView() {
+            SortEventSink shared = delegate.concurrentView();
+            SortMetrics total = metrics;
+            ThreadLocal<MeteredSink> perThread = new ThreadLocal<MeteredSink>() {
+                @Override
+                protected MeteredSink initialValue() {
+                    return new MeteredSink(shared, total.fork());
+                }
+            };
+            return new SortEventSink() {
+                @Override
+                public boolean isSorting() {
+                    return shared.isSorting();
+                }
+                
+                @Override
+                public void updateVisualization(int index1, int index2, int sortedIndex, int pivotIndex) {
+                    shared.updateVisualization(index1, index2, sortedIndex, pivotIndex);
+                }
+                
+                @Override
+                public void markSorted(int index) {
+                    shared.markSorted(index);
+                }
+                
+                @Override
+                public void swap(int[] array, int i, int j) {
+                    perThread.get().swap(array, i, j);
+                }
+                
+                @Override
+                public void write(int[] array, int index, int value) {
+                    perThread.get().write(array, index, value);
+                }
+                
+                @Override
+                public int read(int[] array, int index) {
+                    return perThread.get().read(array, index);
+                }
+                
+                @Override
+                public int compare(int a, int b) {
+                    return perThread.get().compare(a, b);
+                }
+                
+                @Override
+                public int[] allocate(int length) {
+                    return perThread.get().allocate(length);
+                }
+                
+                @Override
+                public void swap(long[] array, int i, int j) {
+                    perThread.get().swap(array, i, j);
+                }
+                
+                @Override
+                public void write(long[] array, int index, long value) {
+                    perThread.get().write(array, index, value);
+                }
+                
+                @Override
+                public long read(long[] array, int index) {
+                    return perThread.get().read(array, index);
+                }
+                
+                @Override
+                public int compare(long a, long b) {
+                    return perThread.get().compare(a, b);
+                }
+                
+                @Override
+                public long[] allocateLongs(int length) {
+                    return perThread.get().allocateLongs(length);
+                }
+                
+                @Override
+                public int keyBytes() {
+                    return shared.keyBytes();
+                }
+                
+                @Override
+                public long radixKey(int value) {
+                    return shared.radixKey(value);
+                }
+                
+                @Override
+                public void assignWorker(int from, int to, int worker) {
+                    shared.assignWorker(from, to, worker);
+                }
+                
+                @Override
+                public void compareStage(int network, int span, int distance) {
+                    shared.compareStage(network, span, distance);
+                }
+                
+                @Override
+                public SortEventSink concurrentView() {
+                    return this;
+                }
+            };
+        }
+    }
+    
+    /**
+     * Sorts indices by the long keys behind them: an engine sorting {@code 0..n-1} through this
+     * sink compares, and splits into radix digits, {@code keys[index]} rather than the index, while
+     * every operation is still forwarded. The delegate sees each comparison as the comparison of
+     * its result with zero, so sinks that count or lock comparisons keep working; the reads,
+     * writes and allocations it sees are of the indices, and key lookups are not reported at all.
+     */
+    static final class IndirectKeySink implements SortEventSink {
+        private final long[] keys;
+        private final SortEventSink delegate;
+        
+        IndirectKeySink(long[] keys, SortEventSink delegate) {
+            this.keys = keys;
+            this.delegate = delegate;
+        }
+        
+        @Override
+        public boolean isSorting() {
+            return delegate.isSorting();
+        }
+        
+        @Override
+        public void updateVisualization(int index1, int index2, int sortedIndex, int pivotIndex) {
+            delegate.updateVisualization(index1, index2, sortedIndex, pivotIndex);
+        }
+        
+        @Override
+        public void markSorted(int index) {
+            delegate.markSorted(index);
+        }
+        
+        @Override
+        public void swap(int[] array, int i, int j) {
+            delegate.swap(array, i, j);
+        }
+        
+        @Override
+        public void write(int[] array, int index, int value) {
+            delegate.write(array, index, value);
+        }
+        
+        @Override
+        public int read(int[] array, int index) {
+            return delegate.read(array, index);
+        }
+        
+        @Override
+        public int compare(int a, int b) {
+            return delegate.compare(Long.compare(keys[a], keys[b]), 0);
+        }
+        
+        @Override
+        public int[] allocate(int length) {
+            return delegate.allocate(length);
+        }
+        
+        @Override
+        public int keyBytes() {
+            return 8;
+        }
+        
+        @Override
+        public long radixKey(int value) {
+            return keys[value] ^ Long.MIN_VALUE;
+        }
+        
+        @Override
+        public void assignWorker(int from, int to, int worker) {
+            delegate.assignWorker(from, to, worker);
+        }
+        
+        @Override
+        public void compareStage(int network, int span, int distance) {
+            delegate.compareStage(network, span, distance);
+        }
+        
+        @Override
+        public SortEventSink concurrentView() {
+            SortEventSink shared = delegate.concurrentView();
+            return shared == delegate ? this : new IndirectKeySink(keys, shared);
+        }
+    }
+    
+    /**
+     * A set-associative LRU cache hierarchy fed with byte addresses. An access probes the levels
+     * in order and fills the line into every level it missed, so the levels behave as an
+     * inclusive hierarchy; stall cycles charge each level's misses the hit latency of the level
+     * below, and the last level's misses the memory latency. Not thread-safe.
+     */
+    static final class CacheSimulator {
+        static final int DEFAULT_MEMORY_CYCLES = 200;
+        
+        private final Level[] levels;
+        private final int memoryCycles;
+        private long accesses;
+        
+        CacheSimulator(int memoryCycles, Level... levels) {
+            if (levels.length == 0) {
+                throw new IllegalArgumentException("At least one cache level is needed");
+            }
+            this.levels = levels;
+            this.memoryCycles = memoryCycles;
+        }
+        
+        /** 32 KB 8-way L1 (4 cycles) and 1 MB 16-way L2 (14 cycles), 64-byte lines. */
+        static CacheSimulator defaults() {
+            return new CacheSimulator(DEFAULT_MEMORY_CYCLES, new Level("L1", 64, 64, 8, 4),
+                new Level("L2", 64, 1024, 16, 14));
+        }
+        
+        /**
+         * Parses {@code default} or comma-separated levels written {@code LINExSETSxWAYS@CYCLES},
+         * e.g. {@code 64x64x8@4,64x1024x16@14}; levels are named L1, L2, ... in order.
+         */
+        static CacheSimulator parse(String spec, int memoryCycles) {
+            if (spec.equals("default")) {
+                return defaults().fresh(memoryCycles);
+            }
+            String[] parts = spec.split(",");
+            Level[] levels = new Level[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                String[] geometry = parts[i].split("[x@]");
+                if (geometry.length != 4) {
+                    throw new IllegalArgumentException("Cache level must be LINExSETSxWAYS@CYCLES: " + parts[i]);
+                }
+                levels[i] = new Level("L" + (i + 1), Integer.parseInt(geometry[0]), Integer.parseInt(geometry[1]),
+                    Integer.parseInt(geometry[2]), Integer.parseInt(geometry[3]));
+            }
+            return new CacheSimulator(memoryCycles, levels);
+        }
+        
+        /** An empty hierarchy with the same geometry. */
+        CacheSimulator fresh() {
+            return fresh(memoryCycles);
+        }
+        
+        private CacheSimulator fresh(int memoryCycles) {
+            Level[] copies = new Level[levels.length];
+            for (int i = 0; i < levels.length; i++) {
+                Level level = levels[i];
+                copies[i] = new Level(level.name, level.lineBytes, level.sets, level.ways, level.hitCycles);
+            }
+            return new CacheSimulator(memoryCycles, copies);
+        }
+        
+        /** Simulates one access; returns whether it hit in the first level. */
+        boolean access(long address) {
+            accesses++;
+            for (Level level : levels) {
+                if (level.access(address)) {
+                    return level == levels[0];
+                }
+            }
+            return false;
+        }
+        
+        long accesses() {
+            return accesses;
+        }
+        
+        int levelCount() {
+            return levels.length;
+        }
+        
+        Level level(int index) {
+            return levels[index];
+        }
+        
+        long stallCycles() {
+            long cycles = 0;
+            for (int i = 0; i < levels.length; i++) {
+                cycles += levels[i].misses * (i + 1 < levels.length ? levels[i + 1].hitCycles : memoryCycles);
+            }
+            return cycles;
+        }
+        
+        String summary() {
+            StringBuilder text = new StringBuilder();
+            for (Level level : levels) {
+                text.append(String.format("%s (%s): %,d hits, %,d misses (%.2f%%) | ", level.name, level.describe(),
+                    level.hits, level.misses, 100.0 * level.missRate()));
+            }
+            return text.append(String.format("~%,d stall cycles", stallCycles())).toString();
+        }
+        
+        static final class Level {
+            final String name;
+            final int lineBytes;
+            final int sets;
+            final int ways;
+            final int hitCycles;
+            private final int lineShift;
+            private final long[] tags;
+            private final long[] lastUse;
+            private long clock;
+            long hits;
+            long misses;
+            
+            Level(String name, int lineBytes, int sets, int ways, int hitCycles) {
+                if (Integer.bitCount(lineBytes) != 1 || Integer.bitCount(sets) != 1 || ways <= 0) {
+                    throw new IllegalArgumentException(name + ": line size and set count must be powers of two");
+                }
+                this.name = name;
+                this.lineBytes = lineBytes;
+                this.sets = sets;
+                this.ways = ways;
+                this.hitCycles = hitCycles;
+                this.lineShift = Integer.numberOfTrailingZeros(lineBytes);
+                this.tags = new long[sets * ways];
+                this.lastUse = new long[sets * ways];
+            }
+            
+            /** Looks the line up and, on a miss, replaces the least recently used way of its set. */
+            boolean access(long address) {
+                long line = (address >>> lineShift) + 1; // 0 marks an empty way
+                int base = (int) (line & (sets - 1)) * ways;
+                int victim = base;
+                clock++;
+                for (int way = base; way < base + ways; way++) {
+                    if (tags[way] == line) {
+                        lastUse[way] = clock;
+                        hits++;
+                        return true;
+                    }
+                    if (lastUse[way] < lastUse[victim]) {
+                        victim = way;
+                    }
+                }
+                tags[victim] = line;
+                lastUse[victim] = clock;
+                misses++;
+                return false;
+            }
+            
+            double missRate() {
+                long total = hits + misses;
+                return total == 0 ? 0 : (double) misses / total;
+            }
+            
+            String describe() {
+                long bytes = (long) lineBytes * sets * ways;
+                String size = bytes >= 1 << 20 ? (bytes >> 20) + " MB" : (bytes >> 10) + " KB";
+                return size + ", " + ways + "-way";
+            }
+        }
+    }
+    
+    /**
+     * Feeds every array index a sort reads or writes into a {@link CacheSimulator}, then forwards
+     * the operation. Arrays are given addresses in the order the sort first touches them, packed
+     * one after another with a 16-byte header and 8-byte alignment, as a bump allocator lays them out. Misses in the first
+     * level are also counted per bucket of the traced array for the panel's miss-rate overlay.
+     * Parallel sorts are serialized through one cache by the default {@link #concurrentView()}.
+     */
+    static final class CacheSimSink implements SortEventSink {
+        static final int MAX_BUCKETS = 1024;
+        private static final long HEADER_BYTES = 16;
+        
+        private final SortEventSink delegate;
+        private final CacheSimulator cache;
+        private final int[] traced;
+        private final long[] bucketAccesses;
+        private final long[] bucketMisses;
+        private final java.util.IdentityHashMap<Object, Long> bases = new java.util.IdentityHashMap<>();
+        private long nextBase = 1 << 20;
+        private Object lastArray;
+        private long lastBase;
+        
+        /** {@code traced} may be null when no per-bucket miss rates are wanted. */
+        CacheSimSink(SortEventSink delegate, CacheSimulator cache, int[] traced) {
+            this.delegate = delegate;
+            this.cache = cache;
+            this.traced = traced;
+            int buckets = traced == null ? 0 : Math.max(1, Math.min(MAX_BUCKETS, traced.length));
+            this.bucketAccesses = new long[buckets];
+            this.bucketMisses = new long[buckets];
+        }
+        
+        CacheSimulator cache() {
+            return cache;
+        }
+        
+        /** First-level miss rate per bucket; bucket {@code b} covers indices from {@code b * n / buckets}. */
+        float[] bucketMissRates() {
+            float[] rates = new float[bucketAccesses.length];
+            for (int b = 0; b < rates.length; b++) {
+                rates[b] = bucketAccesses[b] == 0 ? 0 : (float) bucketMisses[b] / bucketAccesses[b];
+            }
+            return rates;
+        }
+        
+        private void touch(int[] array, int index) {
+            touch(array, array.length, 4, index);
+        }
+        
+        private void touch(long[] array, int index) {
+            touch(array, array.length, 8, index);
+        }
+        
+        /** Simulates an access to element {@code index} of an array of {@code length} elements of {@code scale} bytes. */
+        private void touch(Object array, int length, int scale, int index) {
+            if (array != lastArray) {
+                Long base = bases.get(array);
+                if (base == null) {
+                    base = nextBase + HEADER_BYTES;
+                    nextBase += (HEADER_BYTES + (long) scale * length + 7) & ~7L;
+                    bases.put(array, base);
+                }
+                lastArray = array;
+                lastBase = base;
+            }
+            boolean hit = cache.access(lastBase + (long) scale * index);
+            if (array == traced) {
+                int bucket = (int) ((long) index * bucketAccesses.length / length);
+                bucketAccesses[bucket]++;
+                if (!hit) {
+                    bucketMisses[bucket]++;
+                }
+            }
+        }
+        
+        @Override
+        public boolean isSorting() {
+            return delegate.isSorting();
+        }
+        
+        @Override
+        public void updateVisualization(int index1, int index2, int sortedIndex, int pivotIndex) {
+            delegate.updateVisualization(index1, index2, sortedIndex, pivotIndex);
+        }
+        
+        @Override
+        public void markSorted(int index) {
+            delegate.markSorted(index);
+        }
+        
+        @Override
+        public void swap(int[] array, int i, int j) {
+            touch(array, i);
+            touch(array, j);
+            touch(array, i);
+            touch(array, j);
+            delegate.swap(array, i, j);
+        }
+        
+        @Override
+        public void write(int[] array, int index, int value) {
+            touch(array, index);
+            delegate.write(array, index, value);
+        }
+        
+        @Override
+        public int read(int[] array, int index) {
+            touch(array, index);
+            return delegate.read(array, index);
+        }
+        
+        @Override
+        public int compare(int a, int b) {
+            return delegate.compare(a, b);
+        }
+        
+        @Override
+        public int[] allocate(int length) {
+            return delegate.allocate(length);
+        }
+        
+        @Override
+        public void swap(long[] array, int i, int j) {
+            touch(array, i);
+            touch(array, j);
+            touch(array, i);
+            touch(array, j);
+            delegate.swap(array, i, j);
+        }
+        
+        @Override
+        public void write(long[] array, int index, long value) {
+            touch(array, index);
+            delegate.write(array, index, value);
+        }
+        
+        @Override
+        public long read(long[] array, int index) {
+            touch(array, index);
+            return delegate.read(array, index);
+        }
+        
+        @Override
+        public int compare(long a, long b) {
+            return delegate.compare(a, b);
+        }
+        
+        @Override
+        public long[] allocateLongs(int length) {
+            return delegate.allocateLongs(length);
+        }
+        
+        @Override
+        public int keyBytes() {
+            return delegate.keyBytes();
+        }
+        
+        @Override
+        public long radixKey(int value) {
+            return delegate.radixKey(value);
+        }
+        
+        @Override
+        public void assignWorker(int from, int to, int worker) {
+            delegate.assignWorker(from, to, worker);
+        }
+        
+        @Override
+        public void compareStage(int network, int span, int distance) {
+            delegate.compareStage(network, span, distance);
+        }
+    }
+    
+    /**
+     * Java Flight Recorder events for sort runs, sort phases and rendered frames. All are disabled
+     * by default: unless a recording enables them {@code shouldCommit()} is false and the event
+     * objects never escape, so the JIT removes them. The emitting thread is recorded by JFR itself.
+     */
+    static final class FlightEvents {
+        private FlightEvents() {
+        }
+        
+        @Name("sortvisualizer.Sort")
+        @Label("Sort")
+        @Category("Sorting Visualizer")
+        @Description("One recorded sort run, from start to end, with its operation counts")
+        @Enabled(false)
+        @StackTrace(false)
+        static final class Sort extends jdk.jfr.Event {
+            @Label("Algorithm")
+            String algorithm;
+            @Label("Size")
+            int size;
+            @Label("Comparisons")
+            long comparisons;
+            @Label("Swaps")
+            long swaps;
+            @Label("Reads")
+            long reads;
+            @Label("Writes")
+            long writes;
+            @Label("Allocations")
+            long allocations;
+            @Label("Allocated Bytes")
+            @DataAmount
+            long allocatedBytes;
+            
+            /** Ends the event and commits it with the run's final counts if a recording wants it. */
+            void finish(SortMetrics metrics) {
+                end();
+                if (shouldCommit()) {
+                    algorithm = metrics.algorithm();
+                    size = metrics.size();
+                    comparisons = metrics.comparisons();
+                    swaps = metrics.swaps();
+                    reads = metrics.reads();
+                    writes = metrics.writes();
+                    allocations = metrics.allocations();
+                    allocatedBytes = metrics.allocatedBytes();
+                    commit();
+                }
+            }
+        }
+        
+        @Name("sortvisualizer.Partition")
+        @Label("Partition")
+        @Category("Sorting Visualizer")
+        @Enabled(false)
+        @StackTrace(false)
+        static final class Partition extends jdk.jfr.Event {
+            @Label("Algorithm")
+            String algorithm;
+            @Label("Size")
+            int size;
+            @Label("Comparisons")
+            int comparisons;
+            @Label("Swaps")
+            int swaps;
+        }
+        
+        @Name("sortvisualizer.Merge")
+        @Label("Merge")
+        @Category("Sorting Visualizer")
+        @Enabled(false)
+        @StackTrace(false)
+        static final class Merge extends jdk.jfr.Event {
+            @Label("Algorithm")
+            String algorithm;
+            @Label("Size")
+            int size;
+            @Label("Comparisons")
+            int comparisons;
+            @Label("Writes")
+            int writes;
+        }
+        
+        @Name("sortvisualizer.Heapify")
+        @Label("Heapify")
+        @Category("Sorting Visualizer")
+        @Enabled(false)
+        @StackTrace(false)
+        static final class Heapify extends jdk.jfr.Event {
+            @Label("Algorithm")
+            String algorithm;
+            @Label("Heap Size")
+            int size;
+            @Label("Root")
+            int root;
+            @Label("Swaps")
+            int swaps;
+        }
+        
+        @Name("sortvisualizer.RenderFrame")
+        @Label("Render Frame")
+        @Category("Sorting Visualizer")
+        @Enabled(false)
+        @StackTrace(false)
+        static final class RenderFrame extends jdk.jfr.Event {
+            @Label("Array Size")
+            int arraySize;
+            @Label("Columns Drawn")
+            int columns;
+            @Label("Full Redraw")
+            boolean fullRedraw;
+        }
+    }
+    
+    /**
+     * Headless entry point to the algorithms, keyed by short names. Public so that tools outside
+     * the default package (such as the JMH benchmarks) can reach the engines reflectively.
+     */
+    public static final class SortEngines {
+        private static final String[] NAMES = {
+            "bubble", "selection", "insertion", "merge", "merge-buffered", "quick", "heap", "parallel-merge", "parallel-quick",
+            "dual-pivot-quick", "intro", "radix-lsd", "radix-msd", "hybrid-merge", "hybrid-quick",
+            "parallel-bitonic", "parallel-odd-even", "quick-3way", "auto"
+        };
+        
+        private SortEngines() {
+        }
+        
+        public static String[] names() {
+            return NAMES.clone();
+        }
+        
+        static SortingAlgorithm create(String name) {
+            switch (name) {
+                case "bubble":
+                    return new BubbleSort();
+                case "selection":
+                    return new SelectionSort();
+                case "insertion":
+                    return new InsertionSort();
+                case "merge":
+                    return new MergeSort();
+                case "merge-buffered":
+                    return new BufferedMergeSort();
+                case "quick":
+                    return new QuickSort();
+                case "heap":
+                    return new HeapSort();
+                case "parallel-merge":
+                    return new ParallelMergeSort();
+                case "parallel-quick":
+                    return new ParallelQuickSort();
+                case "dual-pivot-quick":
+                    return new DualPivotQuickSort();
+                case "intro":
+                    return new IntroSort();
+                case "radix-lsd":
+                    return new LsdRadixSort();
+                case "radix-msd":
+                    return new MsdRadixSort();
+                case "hybrid-merge":
+                    return new MergeSort(BlockSorter.DEFAULT_BLOCK);
+                case "hybrid-quick":
+                    return new IntroSort(BlockSorter.DEFAULT_BLOCK);
+                case "parallel-bitonic":
+                    return new NetworkSort(SortingNetworks.BITONIC);
+                case "parallel-odd-even":
+                    return new NetworkSort(SortingNetworks.ODD_EVEN);
+                case "quick-3way":
+                    return new ThreeWayQuickSort();
+                case "auto":
+                    return new AutoSort();
+                default:
+                    throw new IllegalArgumentException("Unknown algorithm: " + name);
+            }
+        }
+        
+        /** Returns a sorter that runs the named algorithm through {@link HeadlessSink}. */
+        public static Consumer<int[]> sorter(String name) {
+            SortingAlgorithm algorithm = create(name);
+            return array -> algorithm.sort(array, HeadlessSink.INSTANCE);
+        }
+        
+        /** {@code size} elements of the named input distribution, from its default seed. */
+        public static int[] input(String distribution, int size) {
+            return InputDistribution.forKey(distribution).generate(size);
+        }
+        
+        /**
+         * Returns a sorter for arrays of at most {@link BlockSorter#MAX_BLOCK} ints: "insertion" runs
+         * {@link InsertionSort}, "scalar-network" the {@link ScalarBlockSorter} and "vector-network"
+         * whatever {@link BlockSorter#create} loads.
+         */
+        public static Consumer<int[]> blockSorter(String kind) {
+            switch (kind) {
+                case "insertion":
+                    return sorter("insertion");
+                case "scalar-network":
+                case "vector-network":
+                    BlockSorter block = kind.equals("scalar-network") ? new ScalarBlockSorter() : BlockSorter.create();
+                    return array -> block.sort(array, 0, array.length);
+                default:
+                    throw new IllegalArgumentException("Unknown block sorter: " + kind);
+            }
+        }
+        
+        /** The {@link BlockSorter#kind} that "vector-network" resolves to in this JVM. */
+        public static String blockSorterKind() {
+            return BlockSorter.create().kind();
+        }
+        
+        /**
+         * Returns a sorter for {@code int[]}, {@code long[]}, {@code double[]} or {@code float[]} arrays, per
+         * {@code keys}: "int", "long", "double" or "float", or "long-indirect" or "double-indirect" to sort
+         * the index permutation even where the engine has a 64-bit form.
+         */
+        public static Consumer<Object> sorter(String name, String keys) {
+            SortingAlgorithm algorithm = create(name);
+            KeyType type = KeyType.forKey(keys);
+            return array -> type.sort(array, algorithm, HeadlessSink.INSTANCE);
+        }
+        
+        /** As {@link #input(String, int)}, as an array of the named key type. */
+        public static Object input(String distribution, int size, String keys) {
+            return KeyType.forKey(keys).keys(input(distribution, size));
+        }
+    }
+    
+    /**
+     * What {@link AutoSort} knows about an input before sorting it, from sampled keys and the key
+     * after each: one key in {@link #SAMPLE_FRACTION}, at least {@link #MIN_SAMPLE} and at most
+     * {@link #SAMPLE}, so sampling stays a small part of even a short sort. Each comes from its own
+     * equal stride at a seeded random offset, so periodic inputs cannot alias with the stride.
+     * Keys are read through the sink and compared as {@link SortEventSink#radixKey}s, so the
+     * profile holds for every key type. The sample's inversions are counted exactly by a merge sort, which also
+     * leaves it sorted for counting distinct keys.
+     */
+    static final class InputProfile {
+        static final int SAMPLE = 1024;
+        static final int MIN_SAMPLE = 64;
+        static final int SAMPLE_FRACTION = 16;
+        static final long SEED = 0x5A3B1E;
+        
+        final int size;
+        final int sampled;
+        final int keyBytes;
+        final int descents;       // sampled keys greater than the key after them
+        final long inversions;    // out-of-order pairs within the sample
+        final int distinct;       // distinct keys within the sample
+        final int rangeBits;      // bits spanned by the sample's largest key minus its smallest
+        final int varyingBytes;   // bytes of the key that differ somewhere in the sample
+        
+        private InputProfile(int size, int sampled, int keyBytes, int descents, long inversions, int distinct,
+                             int rangeBits, int varyingBytes) {
+            this.size = size;
+            this.sampled = sampled;
+            this.keyBytes = keyBytes;
+            this.descents = descents;
+            this.inversions = inversions;
+            this.distinct = distinct;
+            this.rangeBits = rangeBits;
+            this.varyingBytes = varyingBytes;
+        }
+        
+        static InputProfile sample(int[] array, SortEventSink sink) {
+            int n = array.length;
+            int sampled = Math.min(n, Math.min(SAMPLE, Math.max(MIN_SAMPLE, n / SAMPLE_FRACTION)));
+            long[] keys = new long[sampled];
+            SplittableRandom random = new SplittableRandom(SEED);
+            int descents = 0;
+            long varying = 0;
+            for (int k = 0; k < sampled; k++) {
+                int strideStart = (int) ((long) k * n / sampled);
+                int strideEnd = (int) ((long) (k + 1) * n / sampled);
+                int index = strideStart + random.nextInt(strideEnd - strideStart);
+                keys[k] = sink.radixKey(sink.read(array, index));
+                if (index + 1 < n && Long.compareUnsigned(keys[k], sink.radixKey(sink.read(array, index + 1))) > 0) {
+                    descents++;
+                }
+                varying |= keys[k] ^ keys[0];
+            }
+            long inversions = countInversions(keys, new long[sampled], 0, sampled);
+            int distinct = sampled == 0 ? 0 : 1;
+            for (int k = 1; k < sampled; k++) {
+                if (keys[k] != keys[k - 1]) {
+                    distinct++;
+                }
+            }
+            long range = sampled == 0 ? 0 : keys[sampled - 1] - keys[0];
+            int varyingBytes = 0;
+            for (int shift = 0; shift < 8 * sink.keyBytes(); shift += 8) {
+                if ((varying >>> shift & 0xFF) != 0) {
+                    varyingBytes++;
+                }
+            }
+            return new InputProfile(n, sampled, sink.keyBytes(), descents, inversions, distinct,
+                64 - Long.numberOfLeadingZeros(range), varyingBytes);
+        }
+        
+        /** Sorts {@code keys[from, to)} as unsigned numbers and returns how many pairs were out of order. */
+        private static long countInversions(long[] keys, long[] buffer, int from, int to) {
+            if (to - from < 2) {
+                return 0;
+            }
+            int middle = (from + to) >>> 1;
+            long inversions = countInversions(keys, buffer, from, middle) + countInversions(keys, buffer, middle, to);
+            int i = from;
+            int j = middle;
+            for (int k = from; k < to; k++) {
+                if (j >= to || (i < middle && Long.compareUnsigned(keys[i], keys[j]) <= 0)) {
+                    buffer[k] = keys[i++];
+                } else {
+                    inversions += middle - i;
+                    buffer[k] = keys[j++];
+                }
+            }
+            System.arraycopy(buffer, from, keys, from, to - from);
+            return inversions;
+        }
+        
+        /** Ascending runs in the whole array, scaled up from the sampled descents. */
+        long estimatedRuns() {
+            return 1 + Math.round((double) descents / Math.max(1, sampled) * Math.max(0, size - 1));
+        }
+        
+        /**
+         * Inversions in the whole array, exact when every key was sampled. Otherwise scaled up from
+         * the sample with one more inversion than seen, so a sorted-looking sample of a large array
+         * still prices in the inversions it may have missed.
+         */
+        double estimatedInversions() {
+            if (sampled == size) {
+                return inversions;
+            }
+            double pairs = sampled * (sampled - 1) / 2.0;
+            return (inversions + 1) / pairs * size * (size - 1) / 2.0;
+        }
+        
+        /** Distinct keys in the whole array: the sample's count when it repeats keys, otherwise every key. */
+        long estimatedDistinct() {
+            return sampled == size || distinct <= sampled / 2 ? distinct : size;
+        }
+        
+        String summary() {
+            double pairs = Math.max(1, sampled * (sampled - 1) / 2.0);
+            return String.format("%,d keys: ~%,d runs, %.1f%% inversions, %,d of %,d sampled distinct, range 2^%d",
+                size, estimatedRuns(), 100 * inversions / pairs, distinct, sampled, rangeBits);
+        }
+    }
+    
+    /**
+     * Picks an engine per input from its {@link InputProfile} and runs it. Each candidate is priced
+     * by a cost model whose constants were fitted to best-of-five headless runs of this file's
+     * engines, and the cheapest wins: insertion sort priced by keys plus inversions, LSD radix sort
+     * by the bytes that actually vary (it skips the rest), three-way quicksort by the log of the
+     * distinct keys, dual-pivot quicksort by log n, and parallel merge sort by log n split over the
+     * common pool's workers. {@link #DEFAULT_ENGINE} is what a caller would
+     * use without the selector, and the yardstick {@link #measure} reports against.
+     * Insertion sort is stopped once it has shifted {@link #SHIFT_BUDGET} times the keys it was
+     * priced at, or as many as the default engine's price, and the default engine finishes the
+     * array: a sample that looks sorted can miss a few keys that are far out of place.
+     */
+    static final class AutoSort implements SortingAlgorithm {
+        static final String DEFAULT_ENGINE = "dual-pivot-quick";
+        static final int TINY = 32;
+        static final int PARALLEL_MIN_SIZE = 1 << 16;
+        static final long WARMUP_NANOS = 200_000_000;
+        static final int SHIFT_BUDGET = 2;
+        
+        // Estimated nanoseconds per unit of work on one core.
+        private static final double INSERTION_NS = 1.0;     // per key and per inversion
+        private static final double RADIX_NS = 5.0;         // per key and byte pass
+        private static final double RADIX_PASS_NS = 10_000; // per byte pass: buffer, histogram, prefix sums
+        private static final double QUICK_NS = 6.0;         // per key and level, log2 n levels
+        private static final double THREE_WAY_NS = 8.0;     // per key and level, log2 of the distinct keys
+        private static final double MERGE_NS = 9.0;         // per key and level, log2 n levels over p workers
+        
+        private final int parallelism;
+        private volatile Decision lastDecision;
+        
+        AutoSort() {
+            this(ForkJoinPool.getCommonPoolParallelism());
+        }
+        
+        /** Prices parallel merge sort for {@code parallelism} workers; 1 leaves it out. */
+        AutoSort(int parallelism) {
+            this.parallelism = parallelism;
+        }
+        
+        @Override
+        public void sort(int[] array, SortEventSink sink) {
+            Decision decision = decide(InputProfile.sample(array, sink), parallelism);
+            if (!decision.engine.equals("insertion")) {
+                SortEngines.create(decision.engine).sort(array, sink);
+            } else if (!insertionSort(array, shiftBudget(decision), sink)) {
+                decision = decision.withFallback();
+                SortEngines.create(DEFAULT_ENGINE).sort(array, sink);
+            }
+            lastDecision = decision;
+        }
+        
+        /** Keys insertion sort may shift before giving up; unlimited for tiny inputs. */
+        private static long shiftBudget(Decision decision) {
+            if (decision.profile.size <= TINY) {
+                return Long.MAX_VALUE;
+            }
+            return (long) (Math.min(SHIFT_BUDGET * decision.estimatedNanos, decision.defaultEstimatedNanos) / INSERTION_NS);
+        }
+        
+        /** Insertion sorts {@code array} and returns true, or false once more than {@code budget} keys have been shifted. */
+        static boolean insertionSort(int[] array, long budget, SortEventSink sink) {
+            long shifts = 0;
+            for (int i = 1; i < array.length && sink.isSorting(); i++) {
+                int key = sink.read(array, i);
+                int j = i - 1;
+                while (j >= 0) {
+                    int value = sink.read(array, j);
+                    if (sink.compare(value, key) <= 0) break;
+                    sink.updateVisualization(j, j + 1);
+                    sink.write(array, j + 1, value);
+                    j--;
+                }
+                sink.write(array, j + 1, key);
+                shifts += i - 1 - j;
+                if (shifts > budget) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        /** The decision of the latest {@link #sort}, or null before the first. */
+        Decision lastDecision() {
+            return lastDecision;
+        }
+        
+        static Decision decide(InputProfile profile, int parallelism) {
+            int n = profile.size;
+            double levels = Math.log(Math.max(2, n)) / Math.log(2);
+            double quick = QUICK_NS * n * levels;
+            if (n <= TINY) {
+                return new Decision("insertion", profile, parallelism, INSERTION_NS * n * n / 4, quick);
+            }
+            
+            String engine = DEFAULT_ENGINE;
+            double cost = quick;
+            double insertion = INSERTION_NS * (n + profile.estimatedInversions());
+            if (insertion < cost) {
+                engine = "insertion";
+                cost = insertion;
+            }
+            int passes = Math.max(1, profile.varyingBytes);
+            double radix = RADIX_NS * n * passes + RADIX_PASS_NS * passes;
+            if (radix < cost) {
+                engine = "radix-lsd";
+                cost = radix;
+            }
+            double threeWay = THREE_WAY_NS * n * Math.log(Math.max(2, profile.estimatedDistinct())) / Math.log(2);
+            if (threeWay < cost) {
+                engine = "quick-3way";
+                cost = threeWay;
+            }
+            double merge = MERGE_NS * n * levels / parallelism;
+            if (parallelism > 1 && n >= PARALLEL_MIN_SIZE && merge < cost) {
+                engine = "parallel-merge";
+                cost = merge;
+            }
+            return new Decision(engine, profile, parallelism, cost, quick);
+        }
+        
+        /**
+         * Median headless nanoseconds of {@code algorithm} over {@code runs} copies of {@code input},
+         * after warming up for at least one run and {@link #WARMUP_NANOS}, so that the engine a small
+         * input picks is compiled before it is timed.
+         */
+        static long time(SortingAlgorithm algorithm, int[] input, int runs) {
+            int[] work = new int[input.length];
+            long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+            do {
+                System.arraycopy(input, 0, work, 0, input.length);
+                algorithm.sort(work, HeadlessSink.INSTANCE);
+            } while (System.nanoTime() < warmupEnd);
+            long[] times = new long[runs];
+            for (int run = 0; run < runs; run++) {
+                System.arraycopy(input, 0, work, 0, input.length);
+                long start = System.nanoTime();
+                algorithm.sort(work, HeadlessSink.INSTANCE);
+                times[run] = System.nanoTime() - start;
+            }
+            Arrays.sort(times);
+            return times[runs / 2];
+        }
+        
+        /**
+         * Sorts copies of {@code input} headless with the selector, sampling included, and with
+         * {@link #DEFAULT_ENGINE}, and returns the decision with both times.
+         */
+        static Decision measure(int[] input, int runs) {
+            AutoSort auto = new AutoSort();
+            long autoNanos = time(auto, input, runs);
+            long defaultNanos = time(SortEngines.create(DEFAULT_ENGINE), input, runs);
+            return auto.lastDecision().measured(autoNanos, defaultNanos);
+        }
+        
+        /** Prints the decision and measured speedup for every input distribution at {@code size} keys. */
+        static void report(int size, PrintStream out) {
+            int runs = size <= 100_000 ? 51 : size <= 1_000_000 ? 5 : 3;
+            out.printf("Default engine %s, fork/join parallelism p = %d%n", DEFAULT_ENGINE,
+                ForkJoinPool.getCommonPoolParallelism());
+            out.printf("%-14s %-16s %-34s %12s %12s %9s%n",
+                "distribution", "engine", "reason", "auto ms", "default ms", "speedup");
+            for (InputDistribution distribution : InputDistribution.values()) {
+                Decision decision = measure(distribution.generate(size), runs);
+                out.printf("%-14s %-16s %-34s %12.2f %12.2f %8.2fx%n", distribution.key, decision.engine,
+                    decision.reason(), decision.autoNanos / 1e6, decision.defaultNanos / 1e6, decision.speedup());
+            }
+        }
+        
+        /** The engine chosen for one input and why, with modelled and, once {@link #measured}, timed costs. */
+        static final class Decision {
+            final String engine;
+            final InputProfile profile;
+            final int parallelism;
+            final double estimatedNanos;
+            final double defaultEstimatedNanos;
+            final boolean fellBack;   // insertion sort ran out of shifts and the default engine finished
+            final long autoNanos;
+            final long defaultNanos;
+            
+            Decision(String engine, InputProfile profile, int parallelism, double estimatedNanos,
+                     double defaultEstimatedNanos) {
+                this(engine, profile, parallelism, estimatedNanos, defaultEstimatedNanos, false, -1, -1);
+            }
+            
+            private Decision(String engine, InputProfile profile, int parallelism, double estimatedNanos,
+                             double defaultEstimatedNanos, boolean fellBack, long autoNanos, long defaultNanos) {
+                this.engine = engine;
+                this.profile = profile;
+                this.parallelism = parallelism;
+                this.estimatedNanos = estimatedNanos;
+                this.defaultEstimatedNanos = defaultEstimatedNanos;
+                this.fellBack = fellBack;
+                this.autoNanos = autoNanos;
+                this.defaultNanos = defaultNanos;
+            }
+            
+            Decision withFallback() {
+                return new Decision(engine, profile, parallelism, estimatedNanos, defaultEstimatedNanos, true, autoNanos,
+                    defaultNanos);
+            }
+            
+            Decision measured(long autoNanos, long defaultNanos) {
+                return new Decision(engine, profile, parallelism, estimatedNanos, defaultEstimatedNanos, fellBack,
+                    autoNanos, defaultNanos);
+            }
+            
+            /** The profile feature that made {@link #engine} the cheapest. */
+            String reason() {
+                if (profile.size <= TINY) {
+                    return "tiny input";
+                }
+                switch (engine) {
+                    case "insertion":
+                        if (fellBack) {
+                            return "too many shifts, used default";
+                        }
+                        return profile.inversions == 0 ? "sample already sorted"
+                            : String.format("~%,.0f inversions", profile.estimatedInversions());
+                    case "radix-lsd":
+                        return String.format("keys differ in %d of %d bytes", profile.varyingBytes, profile.keyBytes);
+                    case "quick-3way":
+                        return String.format("~%,d distinct keys", profile.estimatedDistinct());
+                    case "parallel-merge":
+                        return String.format("%,d keys over %d workers", profile.size, parallelism);
+                    default:
+                        return "no structure to exploit";
+                }
+            }
+            
+            /** Default time over selector time, or NaN before {@link #measured}. */
+            double speedup() {
+                return autoNanos > 0 ? (double) defaultNanos / autoNanos : Double.NaN;
+            }
+            
+            String summary() {
+                String text = String.format("%s (%s; model %.2f ms vs %.2f ms for %s)", engine, reason(),
+                    estimatedNanos / 1e6, defaultEstimatedNanos / 1e6, DEFAULT_ENGINE);
+                if (autoNanos > 0) {
+                    text += String.format(", measured %.2fx: %.2f ms vs %.2f ms", speedup(), autoNanos / 1e6,
+                        defaultNanos / 1e6);
+                }
+                return text;
+            }
+        }
+    }
+    
+    /**
+     * Runs an algorithm at full speed against a private copy of the array and logs its events in
+     * segments of {@link #interval()} events. Each segment starts with a keyframe, a snapshot of
+     * the array before its first event, so the array at any retained step can be rebuilt by
+     * restoring one keyframe and replaying at most one interval of swaps and writes. The interval
+     * grows with the array size so snapshots cost O(1) per event; once the log and keyframes would
+     * outgrow the memory budget the oldest segment is dropped and its arrays reused.
+     */
+    static final class SortEventRecorder implements SortEventSink {
+        static final int COMPARE = 0;
+        static final int PIVOT = 1;
+        static final int SWAP = 2;
+        static final int WRITE = 3;
+        static final int SORTED = 4;
+        static final int OWNER = 5;
+        static final int READ = 6;
+        static final int STAGE = 7;
+        
+        static final long DEFAULT_BUDGET_BYTES = 128L << 20;
+        static final int MIN_INTERVAL = 1 << 12;
+        static final int MAX_INTERVAL = 1 << 20;
+        
+        private static final int STRIDE = 5;
+        
+        private final int[] array;
+        private final int interval;
+        private final int shift;
+        private final int maxSegments;
+        private final ArrayList<int[]> segments = new ArrayList<>();
+        private final ArrayList<int[]> keyframes = new ArrayList<>();
+        private int[] current;
+        private long firstRetained;
+        private long total;
+        private boolean recordReads;
+        private volatile boolean cancelled;
+        
+        SortEventRecorder(int[] source) {
+            this(source, keyframeInterval(source.length), DEFAULT_BUDGET_BYTES);
+        }
+        
+        SortEventRecorder(int[] source, int interval, long budgetBytes) {
+            if (interval <= 0 || Integer.bitCount(interval) != 1) {
+                throw new IllegalArgumentException("interval must be a power of two: " + interval);
+            }
+            this.array = source.clone();
+            this.interval = interval;
+            this.shift = Integer.numberOfTrailingZeros(interval);
+            long segmentBytes = 4L * ((long) interval * STRIDE + source.length);
+            this.maxSegments = (int) Math.max(1, Math.min(Integer.MAX_VALUE, budgetBytes / segmentBytes));
+        }
+        
+        /** About one event per element between keyframes, within [MIN_INTERVAL, MAX_INTERVAL]. */
+        static int keyframeInterval(int size) {
+            int interval = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+            return Math.max(MIN_INTERVAL, Math.min(MAX_INTERVAL, interval));
+        }
+        
+        /** Sorts the private copy and returns the elapsed time in nanoseconds. */
+        long record(SortingAlgorithm algorithm) {
+            return record(algorithm, this);
+        }
+        
+        /** As {@link #record(SortingAlgorithm)}, through {@code sink}, which must forward to this recorder. */
+        long record(SortingAlgorithm algorithm, SortEventSink sink) {
+            long start = System.nanoTime();
+            algorithm.sort(array, sink);
+            return System.nanoTime() - start;
+        }
+        
+        /** The private copy that {@link #record} sorts. */
+        int[] workingArray() {
+            return array;
+        }
+        
+        void cancel() {
+            cancelled = true;
+        }
+        
+        /** Also logs every read of the array, for the access heatmap; set before recording. */
+        void recordReads(boolean enabled) {
+            recordReads = enabled;
+        }
+        
+        @Override
+        public boolean isSorting() {
+            return !cancelled;
+        }
+        
+        @Override
+        public int read(int[] target, int index) {
+            if (recordReads && target == array) {
+                append(READ, index, -1, -1, -1);
+            }
+            return target[index];
+        }
+        
+        @Override
+        public void updateVisualization(int index1, int index2, int sortedIndex, int pivotIndex) {
+            append(pivotIndex >= 0 ? PIVOT : COMPARE, index1, index2, sortedIndex, pivotIndex);
+        }
+        
+        @Override
+        public void markSorted(int index) {
+            append(SORTED, index, -1, -1, -1);
+        }
+        
+        @Override
+        public void assignWorker(int from, int to, int worker) {
+            append(OWNER, from, to, worker, -1);
+        }
+        
+        @Override
+        public void compareStage(int network, int span, int distance) {
+            append(STAGE, network, span, distance, -1);
+        }
+        
+        // Events are appended before the change so a new segment's keyframe precedes its first event.
+        @Override
+        public void swap(int[] target, int i, int j) {
+            if (target == array) {
+                append(SWAP, i, j, -1, -1);
+            }
+            int temp = target[i];
+            target[i] = target[j];
+            target[j] = temp;
+        }
+        
+        @Override
+        public void write(int[] target, int index, int value) {
+            int old = target[index];
+            if (target == array) {
+                append(WRITE, index, old, value, -1);
+            }
+            target[index] = value;
+        }
+        
+        private void append(int kind, int a, int b, int c, int d) {
+            int base = (int) (total & (interval - 1)) * STRIDE;
+            if (base == 0) {
+                startSegment();
+            }
+            current[base] = kind;
+            current[base + 1] = a;
+            current[base + 2] = b;
+            current[base + 3] = c;
+            current[base + 4] = d;
+            total++;
+        }
+        
+        private void startSegment() {
+            int[] events;
+            int[] keyframe;
+            if (segments.size() == maxSegments) {
+                events = segments.remove(0);
+                keyframe = keyframes.remove(0);
+                firstRetained += interval;
+            } else {
+                events = new int[interval * STRIDE];
+                keyframe = new int[array.length];
+            }
+            System.arraycopy(array, 0, keyframe, 0, array.length);
+            segments.add(events);
+            keyframes.add(keyframe);
+            current = events;
+        }
+        
+        /** Sequence number of the oldest event still held in the log. */
+        long firstRetained() {
+            return firstRetained;
+        }
+        
+        long total() {
+            return total;
+        }
+        
+        long dropped() {
+            return firstRetained;
+        }
+        
+        /** Events per keyframe; the most events {@link #restore} replays. */
+        int interval() {
+            return interval;
+        }
+        
+        int kind(long seq) {
+            return segment(seq)[offset(seq)];
+        }
+        
+        int arg(long seq, int index) {
+            return segment(seq)[offset(seq) + 1 + index];
+        }
+        
+        private int[] segment(long seq) {
+            if (seq < firstRetained || seq >= total) {
+                throw new IndexOutOfBoundsException("event " + seq + " is not retained");
+            }
+            return segments.get((int) ((seq - firstRetained) >>> shift));
+        }
+        
+        private int offset(long seq) {
+            return (int) (seq & (interval - 1)) * STRIDE;
+        }
+        
+        int[] result() {
+            return array;
+        }
+        
+        /** Array contents immediately before {@link #firstRetained()}. */
+        int[] windowStart() {
+            int[] state = new int[array.length];
+            restore(firstRetained, state);
+            return state;
+        }
+        
+        /**
+         * Fills {@code state} with the array as it was before event {@code seq}: the keyframe of
+         * its segment plus at most one interval of swaps and writes.
+         */
+        void restore(long seq, int[] state) {
+            if (seq < firstRetained || seq > total) {
+                throw new IndexOutOfBoundsException("event " + seq + " is not retained");
+            }
+            if (seq == total && (seq & (interval - 1)) == 0) {
+                // No segment has started at the end of the log yet; the final array is the state.
+                System.arraycopy(array, 0, state, 0, array.length);
+                return;
+            }
+            long start = seq & -interval;
+            System.arraycopy(keyframes.get((int) ((start - firstRetained) >>> shift)), 0, state, 0, array.length);
+            for (long event = start; event < seq; event++) {
+                apply(event, state);
+            }
+        }
+        
+        /** Applies event {@code seq} to {@code state} if it changes the array. */
+        void apply(long seq, int[] state) {
+            int[] events = segment(seq);
+            int base = offset(seq);
+            if (events[base] == SWAP) {
+                int temp = state[events[base + 1]];
+                state[events[base + 1]] = state[events[base + 2]];
+                state[events[base + 2]] = temp;
+            } else if (events[base] == WRITE) {
+                state[events[base + 1]] = events[base + 3];
+            }
+        }
+    }
+    
+    /**
+     * Paces animation steps against display frames. Steps run at {@link #setStepsPerSecond}; when
+     * that exceeds the frame rate, consecutive steps are batched into one frame, so the EDT sees
+     * at most one repaint per frame. Waiting uses {@link System#nanoTime()} deadlines with a short
+     * spin at the end rather than {@code Thread.sleep}, which only has millisecond resolution.
+     */
+    static final class FrameScheduler {
+        static final double MIN_STEPS_PER_SECOND = 1;
+        static final double MAX_STEPS_PER_SECOND = 10_000_000;
+        
+        private static final long SPIN_NANOS = 200_000;
+        
+        private final Runnable frame;
+        private volatile double stepsPerSecond = 1_000;
+        private volatile int framesPerSecond = 60;
+        private volatile boolean cancelled;
+        private volatile Thread waiter;
+        private volatile FrameClock clock;
+        private long deadline;
+        private long remaining;
+        private double carry;
+        
+        FrameScheduler(Runnable frame) {
+            this.frame = frame;
+        }
+        
+        void setStepsPerSecond(double stepsPerSecond) {
+            this.stepsPerSecond = Math.max(MIN_STEPS_PER_SECOND, Math.min(MAX_STEPS_PER_SECOND, stepsPerSecond));
+        }
+        
+        void setFramesPerSecond(int framesPerSecond) {
+            this.framesPerSecond = Math.max(1, framesPerSecond);
+        }
+        
+        int getFramesPerSecond() {
+            FrameClock shared = clock;
+            return shared != null ? shared.getFramesPerSecond() : framesPerSecond;
+        }
+        
+        /** Hands frame publishing to {@code clock}, or back to this scheduler when {@code null}. */
+        void useClock(FrameClock clock) {
+            FrameClock previous = this.clock;
+            if (previous != null) {
+                previous.unregister(frame);
+            }
+            this.clock = clock;
+            if (clock != null) {
+                clock.register(frame);
+            }
+        }
+        
+        /** Resets pacing for a new run; must be called from the thread that will call {@link #step}. */
+        void start() {
+            cancelled = false;
+            deadline = System.nanoTime();
+            remaining = 1;
+            carry = 0;
+        }
+        
+        /** Releases a thread blocked in {@link #step} or {@link #awaitFrame}. */
+        void cancel() {
+            cancelled = true;
+            Thread blocked = waiter;
+            if (blocked != null) {
+                LockSupport.unpark(blocked);
+            }
+        }
+        
+        /** Counts one animation step, publishing a frame and waiting once the frame's batch is used up. */
+        void step() {
+            if (--remaining > 0) {
+                return;
+            }
+            double rate = stepsPerSecond;
+            long interval = Math.max(1_000_000_000L / getFramesPerSecond(), (long) (1e9 / rate));
+            awaitFrame(interval);
+            carry += rate * interval / 1e9;
+            remaining = Math.max(1, (long) carry);
+            carry = Math.max(0, carry - remaining);
+        }
+        
+        /** Publishes a frame and waits one frame interval regardless of the step rate. */
+        void awaitFrame() {
+            awaitFrame(1_000_000_000L / getFramesPerSecond());
+        }
+        
+        private void awaitFrame(long interval) {
+            FrameClock shared = clock;
+            if (shared != null) {
+                awaitTicks(shared, Math.max(1, Math.round(interval * (double) shared.getFramesPerSecond() / 1e9)));
+                return;
+            }
+            frame.run();
+            long now = System.nanoTime();
+            deadline += interval;
+            if (deadline < now - interval) {
+                // Fell more than a frame behind (slow paint, rate change): resync instead of bursting.
+                deadline = now;
+            }
+            waiter = Thread.currentThread();
+            try {
+                long left;
+                while (!cancelled && (left = deadline - System.nanoTime()) > 0) {
+                    if (left > SPIN_NANOS) {
+                        LockSupport.parkNanos(this, left - SPIN_NANOS);
+                    } else {
+                        Thread.yield();
+                    }
+                }
+            } finally {
+                waiter = null;
+            }
+        }
+        
+        /** Waits for the shared clock to publish {@code ticks} frames; the clock runs the frame callback. */
+        private void awaitTicks(FrameClock shared, long ticks) {
+            long target = shared.tick() + ticks;
+            waiter = Thread.currentThread();
+            try {
+                while (!cancelled && shared.isRunning() && shared.tick() < target) {
+                    shared.park(target);
+                }
+            } finally {
+                waiter = null;
+            }
+        }
+    }
+    
+    /**
+     * One frame clock for several panels: a single daemon thread ticks at the frame rate, runs
+     * every registered frame callback and wakes the threads waiting for the tick. All panels
+     * publish their dirty columns together, so Swing coalesces them into one repaint pass.
+     */
+    static final class FrameClock {
+        private final List<Runnable> frames = new CopyOnWriteArrayList<>();
+        private final Set<Thread> waiters = ConcurrentHashMap.newKeySet();
+        private volatile int framesPerSecond;
+        private volatile long tick;
+        private volatile Thread thread;
+        
+        FrameClock(int framesPerSecond) {
+            this.framesPerSecond = Math.max(1, framesPerSecond);
+        }
+        
+        int getFramesPerSecond() {
+            return framesPerSecond;
+        }
+        
+        long tick() {
+            return tick;
+        }
+        
+        void register(Runnable frame) {
+            frames.add(frame);
+        }
+        
+        void unregister(Runnable frame) {
+            frames.remove(frame);
+        }
+        
+        synchronized void start() {
+            if (thread != null) return;
+            thread = new Thread(this::run, "frame-clock");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        
+        synchronized void stop() {
+            Thread running = thread;
+            thread = null;
+            if (running != null) {
+                LockSupport.unpark(running);
+            }
+            waiters.forEach(LockSupport::unpark);
+        }
+        
+        boolean isRunning() {
+            return thread != null;
+        }
+        
+        /** Parks the caller until a tick reaches {@code target} or it is woken; callers re-check. */
+        void park(long target) {
+            Thread current = Thread.currentThread();
+            waiters.add(current);
+            try {
+                if (tick < target && thread != null) {
+                    LockSupport.parkNanos(this, 1_000_000_000L / framesPerSecond);
+                }
+            } finally {
+                waiters.remove(current);
+            }
+        }
+        
+        private void run() {
+            long deadline = System.nanoTime();
+            while (thread == Thread.currentThread()) {
+                for (Runnable frame : frames) {
+                    frame.run();
+                }
+                tick++;
+                waiters.forEach(LockSupport::unpark);
+                deadline += 1_000_000_000L / framesPerSecond;
+                long left;
+                while ((left = deadline - System.nanoTime()) > 0 && thread == Thread.currentThread()) {
+                    LockSupport.parkNanos(this, left);
+                }
+                deadline = Math.max(deadline, System.nanoTime() - 1_000_000_000L / framesPerSecond);
+            }
+        }
+    }
+    
+    /**
+     * Feeds the events held by a {@link SortEventRecorder} into a {@link VisualizationPanel}, with
+     * pause, single steps and seeking to any retained step. Other threads only post requests; the
+     * playing thread carries them out between events. A seek within one keyframe interval of the
+     * current step replays or undoes the events in between, anything further restores a keyframe,
+     * so every seek costs at most one interval of events plus one array copy.
+     */
+    static final class SortEventPlayer {
+        private static final long PAUSE_POLL_NANOS = 20_000_000;
+        
+        private final SortEventRecorder recorder;
+        private final AtomicLong seekRequest = new AtomicLong(-1);
+        private final AtomicInteger stepRequest = new AtomicInteger();
+        private volatile boolean paused;
+        private volatile long position;
+        private volatile Thread playing;
+        private int[] scratch;
+        
+        SortEventPlayer(SortEventRecorder recorder) {
+            this.recorder = recorder;
+        }
+        
+        void setPaused(boolean paused) {
+            this.paused = paused;
+            wake();
+        }
+        
+        boolean isPaused() {
+            return paused;
+        }
+        
+        /** Moves one animation step forward ({@code direction > 0}) or back; meant for a paused player. */
+        void step(int direction) {
+            stepRequest.set(Integer.signum(direction));
+            wake();
+        }
+        
+        /** Jumps to the step at {@code fraction} (0 to 1) of the retained events. */
+        void seek(double fraction) {
+            long first = recorder.firstRetained();
+            double clamped = Math.max(0, Math.min(1, fraction));
+            seekRequest.set(first + Math.round(clamped * (recorder.total() - first)));
+            wake();
+        }
+        
+        /** Events applied so far, as a fraction of the retained events. */
+        double progress() {
+            long first = recorder.firstRetained();
+            long span = recorder.total() - first;
+            return span == 0 ? 1 : (double) (position - first) / span;
+        }
+        
+        long position() {
+            return position;
+        }
+        
+        long total() {
+            return recorder.total();
+        }
+        
+        void wake() {
+            Thread thread = playing;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+        
+        /** Plays from the start of the retained events to the end, or until the panel stops sorting. */
+        void play(VisualizationPanel panel) {
+            playing = Thread.currentThread();
+            seekRequest.set(-1);
+            stepRequest.set(0);
+            try {
+                panel.loadArray(recorder.windowStart());
+                position = recorder.firstRetained();
+                while (panel.isSorting()) {
+                    long target = seekRequest.getAndSet(-1);
+                    int step = stepRequest.getAndSet(0);
+                    if (step != 0) {
+                        target = step > 0 ? nextStep(position) : previousStep(position);
+                    }
+                    if (target >= 0) {
+                        seekTo(panel, target);
+                        continue;
+                    }
+                    if (paused) {
+                        LockSupport.parkNanos(this, PAUSE_POLL_NANOS);
+                    } else if (position < recorder.total()) {
+                        apply(panel, position, true);
+                        position++;
+                    } else {
+                        break;
+                    }
+                }
+            } finally {
+                playing = null;
+            }
+        }
+        
+        /** Plays {@code [from, to)} without seeking; events before {@code from} are applied silently. */
+        void play(VisualizationPanel panel, long from, long to) {
+            panel.loadArray(recorder.windowStart());
+            for (long seq = recorder.firstRetained(); seq < to && panel.isSorting(); seq++) {
+                apply(panel, seq, seq >= from);
+            }
+            position = to;
+        }
+        
+        private void apply(VisualizationPanel panel, long seq, boolean animate) {
+            int[] shown = panel.getArray();
+            int a = recorder.arg(seq, 0);
+            int b = recorder.arg(seq, 1);
+            switch (recorder.kind(seq)) {
+                case SortEventRecorder.SWAP:
+                    panel.swap(shown, a, b);
+                    break;
+                case SortEventRecorder.WRITE:
+                    panel.write(shown, a, recorder.arg(seq, 2));
+                    break;
+                case SortEventRecorder.OWNER:
+                    panel.assignWorker(a, b, recorder.arg(seq, 2));
+                    break;
+                case SortEventRecorder.READ:
+                    panel.read(shown, a);
+                    break;
+                case SortEventRecorder.SORTED:
+                    if (animate) {
+                        panel.markSorted(a);
+                    }
+                    break;
+                case SortEventRecorder.STAGE:
+                    if (animate) {
+                        panel.compareStage(a, b, recorder.arg(seq, 2));
+                    }
+                    break;
+                default:
+                    if (animate) {
+                        panel.updateVisualization(a, b, recorder.arg(seq, 2), recorder.arg(seq, 3));
+                    }
+            }
+        }
+        
+        private void undo(VisualizationPanel panel, long seq) {
+            int[] shown = panel.getArray();
+            int kind = recorder.kind(seq);
+            if (kind == SortEventRecorder.SWAP) {
+                panel.swap(shown, recorder.arg(seq, 0), recorder.arg(seq, 1));
+            } else if (kind == SortEventRecorder.WRITE) {
+                panel.write(shown, recorder.arg(seq, 0), recorder.arg(seq, 1));
+            }
+        }
+        
+        private void seekTo(VisualizationPanel panel, long target) {
+            long first = recorder.firstRetained();
+            long total = recorder.total();
+            target = Math.max(first, Math.min(total, target));
+            long distance = target - position;
+            int interval = recorder.interval();
+            if (distance >= 0 && distance <= interval) {
+                for (long seq = position; seq < target; seq++) {
+                    apply(panel, seq, false);
+                }
+            } else {
+                if (distance < 0 && distance >= -interval) {
+                    for (long seq = position - 1; seq >= target; seq--) {
+                        undo(panel, seq);
+                    }
+                } else {
+                    if (scratch == null || scratch.length != recorder.result().length) {
+                        scratch = new int[recorder.result().length];
+                    }
+                    recorder.restore(target, scratch);
+                    panel.loadArray(scratch);
+                }
+                // Worker colours cannot be undone; rebuild them from the keyframe's segment.
+                panel.assignWorker(0, recorder.result().length, -1);
+                for (long seq = Math.max(first, target & -interval); seq < target; seq++) {
+                    if (recorder.kind(seq) == SortEventRecorder.OWNER) {
+                        apply(panel, seq, false);
+                    }
+                }
+            }
+            position = target;
+            showHighlight(panel, target);
+            panel.repaintDirty();
+        }
+        
+        /** Highlights as of the last animated event before {@code seq}, looking back one interval at most. */
+        private void showHighlight(VisualizationPanel panel, long seq) {
+            long limit = Math.max(recorder.firstRetained(), seq - recorder.interval());
+            for (long event = seq - 1; event >= limit; event--) {
+                int kind = recorder.kind(event);
+                if (kind == SortEventRecorder.COMPARE || kind == SortEventRecorder.PIVOT) {
+                    panel.setHighlight(recorder.arg(event, 0), recorder.arg(event, 1), recorder.arg(event, 2),
+                        recorder.arg(event, 3));
+                    return;
+                }
+                if (kind == SortEventRecorder.SORTED) {
+                    panel.setHighlight(-1, -1, recorder.arg(event, 0), -1);
+                    return;
+                }
+                if (kind == SortEventRecorder.STAGE) {
+                    panel.setStage(recorder.arg(event, 0), recorder.arg(event, 1), recorder.arg(event, 2));
+                    return;
+                }
+            }
+            panel.setHighlight(-1, -1, -1, -1);
+        }
+        
+        /** The position just after the next animated event at or after {@code from}. */
+        private long nextStep(long from) {
+            long total = recorder.total();
+            for (long seq = from; seq < total; seq++) {
+                if (isAnimated(recorder.kind(seq))) {
+                    return seq + 1;
+                }
+            }
+            return total;
+        }
+        
+        /** The position just after the last animated event before {@code from - 1}. */
+        private long previousStep(long from) {
+            long first = recorder.firstRetained();
+            for (long seq = from - 2; seq >= first; seq--) {
+                if (isAnimated(recorder.kind(seq))) {
+                    return seq + 1;
+                }
+            }
+            return first;
+        }
+        
+        private static boolean isAnimated(int kind) {
+            return kind == SortEventRecorder.COMPARE || kind == SortEventRecorder.PIVOT
+                || kind == SortEventRecorder.SORTED || kind == SortEventRecorder.STAGE;
+        }
+    }
+    
+    /**
+     * Streams a sort's events to a binary trace file instead of the heap. The file starts with a
+     * fixed header (magic, version, event count, array length) and the initial array as zigzag
+     * varint deltas; each event is then a tag byte holding the kind and a bit per present index,
+     * the indices as zigzag varint deltas from the previous index, and any raw values as zigzag
+     * varints. Neighbouring accesses typically take one or two bytes per index. Version 2 added
+     * reads, written only when {@link #recordReads} is on, and sorting-network stages, whose
+     * network, span and distance are raw values; version 1 files still play. Events are batched
+     * in a large direct buffer and written through a {@link FileChannel}; the event count in the
+     * header is filled in by {@link #close()}.
+     */
+    static final class SortTraceWriter implements SortEventSink, java.io.Closeable {
+        static final int MAGIC = 0x53565452; // "SVTR"
+        static final int VERSION = 2;
+        static final int HEADER_BYTES = 20;
+        static final int MAX_EVENT_BYTES = 1 + 5 * 5;
+        
+        // Index arguments and raw values per event kind, in SortEventRecorder's numbering.
+        static final int[] INDEX_ARGS = {4, 4, 2, 1, 1, 2, 1, 0};
+        static final int[] VALUE_ARGS = {0, 0, 0, 1, 0, 1, 0, 3};
+        
+        private static final int BUFFER_BYTES = 4 << 20;
+        
+        private final int[] array;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        private long events;
+        private long bytes;
+        private int last;
+        private boolean recordReads;
+        private volatile boolean cancelled;
+        
+        /** Opens {@code file} for a trace of sorts on {@code array}, whose current contents are the initial state. */
+        SortTraceWriter(Path file, int[] array) throws IOException {
+            this.array = array;
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(0).putInt(array.length);
+            int previous = 0;
+            for (int value : array) {
+                ensure(5);
+                putVarint(zigzag(value - previous));
+                previous = value;
+            }
+        }
+        
+        /** Sorts the array through this writer, returns the elapsed nanoseconds and closes the trace. */
+        long record(SortingAlgorithm algorithm) throws IOException {
+            try {
+                long start = System.nanoTime();
+                algorithm.sort(array, this);
+                return System.nanoTime() - start;
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                close();
+            }
+        }
+        
+        long events() {
+            return events;
+        }
+        
+        /** Bytes written so far, header included. */
+        long bytes() {
+            return bytes + buffer.position();
+        }
+        
+        void cancel() {
+            cancelled = true;
+        }
+        
+        /** Also writes every read of the array, for the access heatmap on playback; set before recording. */
+        void recordReads(boolean enabled) {
+            recordReads = enabled;
+        }
+        
+        @Override
+        public boolean isSorting() {
+            return !cancelled;
+        }
+        
+        @Override
+        public int read(int[] target, int index) {
+            if (recordReads && target == array) {
+                event(SortEventRecorder.READ, index, -1, -1, -1);
+            }
+            return target[index];
+        }
+        
+        @Override
+        public void updateVisualization(int index1, int index2, int sortedIndex, int pivotIndex) {
+            event(pivotIndex >= 0 ? SortEventRecorder.PIVOT : SortEventRecorder.COMPARE,
+                index1, index2, sortedIndex, pivotIndex);
+        }
+        
+        @Override
+        public void markSorted(int index) {
+            event(SortEventRecorder.SORTED, index, -1, -1, -1);
+        }
+        
+        @Override
+        public void assignWorker(int from, int to, int worker) {
+            event(SortEventRecorder.OWNER, from, to, -1, -1);
+            putVarint(zigzag(worker));
+        }
+        
+        @Override
+        public void compareStage(int network, int span, int distance) {
+            event(SortEventRecorder.STAGE, -1, -1, -1, -1);
+            putVarint(zigzag(network));
+            putVarint(zigzag(span));
+            putVarint(zigzag(distance));
+        }
+        
+        @Override
+        public void swap(int[] target, int i, int j) {
+            if (target == array) {
+                event(SortEventRecorder.SWAP, i, j, -1, -1);
+            }
+            int temp = target[i];
+            target[i] = target[j];
+            target[j] = temp;
+        }
+        
+        @Override
+        public void write(int[] target, int index, int value) {
+            if (target == array) {
+                event(SortEventRecorder.WRITE, index, -1, -1, -1);
+                putVarint(zigzag(value));
+            }
+            target[index] = value;
+        }
+        
+        private void event(int kind, int a, int b, int c, int d) {
+            ensure(MAX_EVENT_BYTES);
+            int mask = (a >= 0 ? 1 : 0) | (b >= 0 ? 2 : 0) | (c >= 0 ? 4 : 0) | (d >= 0 ? 8 : 0);
+            buffer.put((byte) (kind | mask << 3));
+            index(a);
+            index(b);
+            index(c);
+            index(d);
+            events++;
+        }
+        
+        private void index(int value) {
+            if (value >= 0) {
+                putVarint(zigzag(value - last));
+                last = value;
+            }
+        }
+        
+        private void putVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                buffer.put((byte) (value & 0x7F | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+        
+        private static int zigzag(int value) {
+            return value << 1 ^ value >> 31;
+        }
+        
+        private void ensure(int needed) {
+            if (buffer.remaining() < needed) {
+                try {
+                    flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+        
+        private void flush() throws IOException {
+            buffer.flip();
+            bytes += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            if (!channel.isOpen()) return;
+            try {
+                flush();
+                ByteBuffer count = ByteBuffer.allocate(8).putLong(0, events);
+                channel.write(count, 8);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+    
+    /**
+     * Reads a {@link SortTraceWriter} file through read-only memory-mapped windows, so traces far
+     * larger than the heap can be replayed; only the initial array is copied into memory. Windows
+     * are remapped as the cursor crosses them and never exceed {@link #WINDOW_BYTES}.
+     */
+    static final class SortTraceReader implements java.io.Closeable {
+        static final long WINDOW_BYTES = 256L << 20;
+        
+        private final FileChannel channel;
+        private final long size;
+        private final long events;
+        private final int lastKind;
+        private final int[] initial;
+        private MappedByteBuffer window;
+        private long windowStart;
+        private long played;
+        
+        SortTraceReader(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                size = channel.size();
+                if (size < SortTraceWriter.HEADER_BYTES) {
+                    throw new IOException("Not a sort trace: " + file);
+                }
+                map(0);
+                if (window.getInt() != SortTraceWriter.MAGIC) {
+                    throw new IOException("Not a sort trace: " + file);
+                }
+                int version = window.getInt();
+                if (version < 1 || version > SortTraceWriter.VERSION) {
+                    throw new IOException("Unsupported trace version " + version);
+                }
+                lastKind = version == 1 ? SortEventRecorder.OWNER : SortEventRecorder.STAGE;
+                events = window.getLong();
+                initial = new int[window.getInt()];
+                int previous = 0;
+                for (int i = 0; i < initial.length; i++) {
+                    ensure(5);
+                    previous += unzigzag(getVarint());
+                    initial[i] = previous;
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+        
+        long events() {
+            return events;
+        }
+        
+        long played() {
+            return played;
+        }
+        
+        /** The array before the first event; shared, so callers must not modify it. */
+        int[] initialArray() {
+            return initial;
+        }
+        
+        /**
+         * Plays the remaining events into {@code panel}, which must already hold the initial array,
+         * paced like a recorded run; stops early once the panel stops sorting.
+         */
+        void play(VisualizationPanel panel) throws IOException {
+            int[] shown = panel.getArray();
+            int[] args = new int[4];
+            int[] values = new int[3];
+            int last = 0;
+            while (played < events && panel.isSorting()) {
+                ensure(SortTraceWriter.MAX_EVENT_BYTES);
+                int tag = window.get() & 0xFF;
+                int kind = tag & 7;
+                if (kind > lastKind) {
+                    throw new IOException("Corrupt trace at event " + played);
+                }
+                for (int k = 0; k < SortTraceWriter.INDEX_ARGS[kind]; k++) {
+                    if ((tag >>> 3 + k & 1) != 0) {
+                        last += unzigzag(getVarint());
+                        args[k] = last;
+                    } else {
+                        args[k] = -1;
+                    }
+                }
+                for (int k = 0; k < SortTraceWriter.VALUE_ARGS[kind]; k++) {
+                    values[k] = unzigzag(getVarint());
+                }
+                switch (kind) {
+                    case SortEventRecorder.SWAP:
+                        panel.swap(shown, args[0], args[1]);
+                        break;
+                    case SortEventRecorder.WRITE:
+                        panel.write(shown, args[0], values[0]);
+                        break;
+                    case SortEventRecorder.OWNER:
+                        panel.assignWorker(args[0], args[1], values[0]);
+                        break;
+                    case SortEventRecorder.SORTED:
+                        panel.markSorted(args[0]);
+                        break;
+                    case SortEventRecorder.READ:
+                        panel.read(shown, args[0]);
+                        break;
+                    case SortEventRecorder.STAGE:
+                        panel.compareStage(values[0], values[1], values[2]);
+                        break;
+                    default:
+                        panel.updateVisualization(args[0], args[1], args[2], args[3]);
+                }
+                played++;
+            }
+        }
+        
+        private int getVarint() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = window.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+        
+        private static int unzigzag(int value) {
+            return value >>> 1 ^ -(value & 1);
+        }
+        
+        private void ensure(int needed) throws IOException {
+            long position = windowStart + window.position();
+            if (window.remaining() < needed && position + window.remaining() < size) {
+                map(position);
+            }
+        }
+        
+        private void map(long position) throws IOException {
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_BYTES, size - position));
+        }
+        
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+    
+    /**
+     * External merge sort for files of raw 32-bit ints that do not fit on the heap. The input is
+     * read through a {@link FileChannel} in runs of {@code runElements} ints, each run is sorted in
+     * memory by an ordinary engine and spilled to a temporary file, and the runs are then merged
+     * {@code fanIn} at a time with a min-heap of packed {@code (value, run)} longs until one run
+     * is left. Every file goes through large direct buffers; once a merge is down to its last run,
+     * the rest of that run is copied with {@link FileChannel#transferTo}, which the OS can do
+     * without the bytes passing through the JVM. Progress is reported per run, not per element.
+     */
+    static final class ExternalMergeSort {
+        static final int DEFAULT_RUN_ELEMENTS = 1 << 24;
+        static final int DEFAULT_FAN_IN = 128;
+        static final String DEFAULT_ENGINE = "radix-lsd";
+        
+        private static final int IO_BUFFER_BYTES = 4 << 20;
+        private static final int MERGE_BUFFER_BYTES = 64 << 20; // shared by the inputs of one merge
+        private static final int MIN_RUN_BUFFER_BYTES = 64 << 10;
+        private static final String USAGE = "usage: --external <input> <output> [--engine name] [--run-elements n]"
+            + " [--fan-in n] [--temp dir] [--little-endian]\n       --external --generate <count> <file> [--little-endian]";
+        
+        /** Run-level progress, reported from the sorting thread. */
+        interface Listener {
+            /**
+             * Announces a level: level 0 holds the runs sorted in memory, level {@code k} the runs
+             * written by merge pass {@code k}. Run {@code i} covers elements
+             * {@code [boundaries[i], boundaries[i + 1])} of the output.
+             */
+            void level(int level, long[] boundaries);
+            
+            /** {@code done} elements of the run have been written; 0 when work on it starts. */
+            void progress(int level, int run, long done);
+        }
+        
+        static final Listener SILENT = new Listener() {
+            @Override
+            public void level(int level, long[] boundaries) {
+            }
+            
+            @Override
+            public void progress(int level, int run, long done) {
+            }
+        };
+        
+        private final String engine;
+        private final int runElements;
+        private final int fanIn;
+        private final Path tempDirectory;
+        private final ByteOrder order;
+        private final ByteBuffer ioBuffer;
+        private final List<Path> spilled = new ArrayList<>();
+        private ByteBuffer[] mergeBuffers = new ByteBuffer[0];
+        private Listener listener = SILENT;
+        private volatile boolean cancelled;
+        private long elements;
+        private int runs;
+        private int passes;
+        private long spilledBytes;
+        
+        /** Sorts big-endian ints with the default engine, run size and fan-in, spilling to the system temp directory. */
+        ExternalMergeSort() {
+            this(DEFAULT_ENGINE, DEFAULT_RUN_ELEMENTS, DEFAULT_FAN_IN, null, ByteOrder.BIG_ENDIAN);
+        }
+        
+        /** {@code tempDirectory} may be null for the system temp directory. */
+        ExternalMergeSort(String engine, int runElements, int fanIn, Path tempDirectory, ByteOrder order) {
+            if (runElements < 1 || fanIn < 2) {
+                throw new IllegalArgumentException("Runs need at least 1 element and merges at least 2 inputs");
+            }
+            SortEngines.create(engine);
+            this.engine = engine;
+            this.runElements = runElements;
+            this.fanIn = fanIn;
+            this.tempDirectory = tempDirectory;
+            this.order = order;
+            this.ioBuffer = ByteBuffer.allocateDirect(IO_BUFFER_BYTES).order(order);
+        }
+        
+        void setListener(Listener listener) {
+            this.listener = listener == null ? SILENT : listener;
+        }
+        
+        public static void main(String[] args) throws IOException {
+            ByteOrder order = Arrays.asList(args).contains("--little-endian") ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+            if (args.length >= 4 && args[1].equals("--generate")) {
+                long count = Long.parseLong(args[2]);
+                writeRandom(Paths.get(args[3]), count, order);
+                System.out.printf("Wrote %,d random ints to %s%n", count, args[3]);
+                return;
+            }
+            if (args.length < 3) {
+                System.err.println(USAGE);
+                System.exit(2);
+            }
+            String engine = DEFAULT_ENGINE;
+            int runElements = DEFAULT_RUN_ELEMENTS;
+            int fanIn = DEFAULT_FAN_IN;
+            Path temp = null;
+            for (int i = 3; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--engine":
+                        engine = args[++i];
+                        break;
+                    case "--run-elements":
+                        runElements = Integer.parseInt(args[++i]);
+                        break;
+                    case "--fan-in":
+                        fanIn = Integer.parseInt(args[++i]);
+                        break;
+                    case "--temp":
+                        temp = Paths.get(args[++i]);
+                        break;
+                    case "--little-endian":
+                        break;
+                    default:
+                        System.err.println("Unknown option: " + args[i]);
+                        System.err.println(USAGE);
+                        System.exit(2);
+                }
+            }
+            ExternalMergeSort sort = new ExternalMergeSort(engine, runElements, fanIn, temp, order);
+            sort.setListener(new Listener() {
+                @Override
+                public void level(int level, long[] boundaries) {
+                    System.out.printf(level == 0 ? "Forming %d runs%n" : "Merge pass %d into %d runs%n",
+                        level == 0 ? boundaries.length - 1 : level, boundaries.length - 1);
+                }
+                
+                @Override
+                public void progress(int level, int run, long done) {
+                }
+            });
+            long nanos = sort.sort(Paths.get(args[1]), Paths.get(args[2]));
+            System.out.printf("Sorted %d runs in %d merge passes, %,d bytes spilled, in %.1f s%n", sort.runs(),
+                sort.passes(), sort.spilledBytes(), nanos / 1e9);
+        }
+        
+        /** Writes {@code count} uniformly random ints to {@code file}, in blocks that each have their own seed. */
+        static void writeRandom(Path file, long count, ByteOrder order) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_BYTES).order(order);
+            int[] block = new int[IO_BUFFER_BYTES / 4];
+            SplittableRandom root = new SplittableRandom(InputDistribution.SEED);
+            try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (long from = 0; from < count; from += block.length) {
+                    int length = (int) Math.min(block.length, count - from);
+                    SplittableRandom random = root.split();
+                    for (int i = 0; i < length; i++) {
+                        block[i] = random.nextInt();
+                    }
+                    buffer.clear();
+                    buffer.asIntBuffer().put(block, 0, length);
+                    buffer.position(4 * length);
+                    drain(out, buffer);
+                }
+            }
+        }
+        
+        void cancel() {
+            cancelled = true;
+        }
+        
+        int runs() {
+            return runs;
+        }
+        
+        int passes() {
+            return passes;
+        }
+        
+        /** Bytes written to temporary run files. */
+        long spilledBytes() {
+            return spilledBytes;
+        }
+        
+        /** Sorts {@code input} into {@code output}, which may not be the same file, and returns the elapsed nanoseconds. */
+        long sort(Path input, Path output) throws IOException {
+            if (Files.exists(output) && Files.isSameFile(input, output)) {
+                throw new IOException("The output must not be the input file");
+            }
+            long start = System.nanoTime();
+            try {
+                List<Path> level = formRuns(input, output);
+                long[] boundaries = boundaries(level.size());
+                while (level.size() > 1) {
+                    level = mergePass(level, boundaries, output);
+                    boundaries = mergedBoundaries(boundaries);
+                }
+            } finally {
+                for (Path run : spilled) {
+                    Files.deleteIfExists(run);
+                }
+                spilled.clear();
+            }
+            return System.nanoTime() - start;
+        }
+        
+        /** Level 0: sorts each run in memory. A single run is written straight to the output. */
+        private List<Path> formRuns(Path input, Path output) throws IOException {
+            List<Path> formed = new ArrayList<>();
+            try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+                long size = in.size();
+                if (size % 4 != 0) {
+                    throw new IOException(input + " is not a whole number of 32-bit ints (" + size + " bytes)");
+                }
+                elements = size / 4;
+                runs = (int) Math.max(1, (elements + runElements - 1) / runElements);
+                passes = 0;
+                spilledBytes = 0;
+                long[] boundaries = boundaries(runs);
+                listener.level(0, boundaries);
+                int[] run = null;
+                for (int r = 0; r < runs; r++) {
+                    checkCancelled();
+                    listener.progress(0, r, 0);
+                    int length = (int) (boundaries[r + 1] - boundaries[r]);
+                    if (run == null || run.length != length) {
+                        run = new int[length];
+                    }
+                    read(in, run);
+                    SortEngines.create(engine).sort(run, HeadlessSink.INSTANCE);
+                    Path target = runs == 1 ? output : spill();
+                    try (FileChannel out = openForWrite(target)) {
+                        write(out, run);
+                    }
+                    if (runs > 1) {
+                        spilledBytes += 4L * length;
+                    }
+                    formed.add(target);
+                    listener.progress(0, r, length);
+                }
+            }
+            return formed;
+        }
+        
+        private List<Path> mergePass(List<Path> level, long[] boundaries, Path output) throws IOException {
+            passes++;
+            int groups = (level.size() + fanIn - 1) / fanIn;
+            listener.level(passes, mergedBoundaries(boundaries));
+            int inputs = Math.min(fanIn, level.size());
+            int bufferBytes = Math.max(MIN_RUN_BUFFER_BYTES, Math.min(IO_BUFFER_BYTES, MERGE_BUFFER_BYTES / inputs)) & ~3;
+            if (mergeBuffers.length < inputs || mergeBuffers[0].capacity() != bufferBytes) {
+                mergeBuffers = new ByteBuffer[inputs];
+                for (int i = 0; i < inputs; i++) {
+                    mergeBuffers[i] = ByteBuffer.allocateDirect(bufferBytes).order(order);
+                }
+            }
+            List<Path> merged = new ArrayList<>();
+            for (int g = 0; g < groups; g++) {
+                checkCancelled();
+                List<Path> group = level.subList(g * fanIn, Math.min(level.size(), (g + 1) * fanIn));
+                Path target = groups == 1 ? output : spill();
+                listener.progress(passes, g, 0);
+                long written = merge(group, target, g);
+                if (groups > 1) {
+                    spilledBytes += 4 * written;
+                }
+                listener.progress(passes, g, written);
+                for (Path run : group) {
+                    Files.deleteIfExists(run);
+                    spilled.remove(run);
+                }
+                merged.add(target);
+            }
+            return merged;
+        }
+        
+        /** Merges {@code group} into {@code target} and returns the number of elements written. */
+        private long merge(List<Path> group, Path target, int index) throws IOException {
+            int k = group.size();
+            RunReader[] readers = new RunReader[k];
+            try (FileChannel out = openForWrite(target)) {
+                long[] heap = new long[k];
+                int size = 0;
+                for (int r = 0; r < k; r++) {
+                    readers[r] = new RunReader(group.get(r), mergeBuffers[r]);
+                    if (readers[r].hasNext()) {
+                        heap[size++] = entry(readers[r].next(), r);
+                    }
+                }
+                for (int i = size / 2 - 1; i >= 0; i--) {
+                    siftDown(heap, size, i);
+                }
+                
+                ByteBuffer buffer = ioBuffer;
+                buffer.clear();
+                long written = 0;
+                while (size > 1) {
+                    if (!buffer.hasRemaining()) {
+                        written += drain(out, buffer);
+                        listener.progress(passes, index, written / 4);
+                        checkCancelled();
+                    }
+                    long top = heap[0];
+                    buffer.putInt((int) (top >> 32));
+                    RunReader reader = readers[(int) top];
+                    if (reader.hasNext()) {
+                        heap[0] = entry(reader.next(), (int) top);
+                    } else {
+                        heap[0] = heap[--size];
+                    }
+                    siftDown(heap, size, 0);
+                }
+                if (size == 1) {
+                    if (!buffer.hasRemaining()) {
+                        written += drain(out, buffer);
+                    }
+                    buffer.putInt((int) (heap[0] >> 32));
+                    written += drain(out, buffer);
+                    written += readers[(int) heap[0]].transferRest(out);
+                } else {
+                    written += drain(out, buffer);
+                }
+                return written / 4;
+            } finally {
+                for (RunReader reader : readers) {
+                    if (reader != null) reader.close();
+                }
+            }
+        }
+        
+        // Value in the high half, run in the low half: signed order is by value, then by run.
+        private static long entry(int value, int run) {
+            return (long) value << 32 | run;
+        }
+        
+        private static void siftDown(long[] heap, int size, int i) {
+            long entry = heap[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && heap[child + 1] < heap[child]) child++;
+                if (heap[child] >= entry) break;
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = entry;
+        }
+        
+        private long[] boundaries(int count) {
+            long[] boundaries = new long[count + 1];
+            for (int r = 0; r <= count; r++) {
+                boundaries[r] = Math.min(elements, (long) r * runElements);
+            }
+            boundaries[count] = elements;
+            return boundaries;
+        }
+        
+        private long[] mergedBoundaries(long[] boundaries) {
+            int count = boundaries.length - 1;
+            int groups = (count + fanIn - 1) / fanIn;
+            long[] merged = new long[groups + 1];
+            for (int g = 0; g <= groups; g++) {
+                merged[g] = boundaries[Math.min(count, g * fanIn)];
+            }
+            return merged;
+        }
+        
+        private Path spill() throws IOException {
+            Path run = tempDirectory == null ? Files.createTempFile("sort-run-", ".ints")
+                : Files.createTempFile(tempDirectory, "sort-run-", ".ints");
+            spilled.add(run);
+            return run;
+        }
+        
+        private FileChannel openForWrite(Path file) throws IOException {
+            return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        
+        private void read(FileChannel in, int[] run) throws IOException {
+            for (int filled = 0; filled < run.length; ) {
+                ioBuffer.clear();
+                ioBuffer.limit((int) Math.min(ioBuffer.capacity(), 4L * (run.length - filled)));
+                while (ioBuffer.hasRemaining()) {
+                    if (in.read(ioBuffer) < 0) {
+                        throw new java.io.EOFException("Input ended early");
+                    }
+                }
+                ioBuffer.flip();
+                int count = ioBuffer.remaining() / 4;
+                ioBuffer.asIntBuffer().get(run, filled, count);
+                filled += count;
+            }
+        }
+        
+        private void write(FileChannel out, int[] run) throws IOException {
+            for (int from = 0; from < run.length; ) {
+                ioBuffer.clear();
+                int count = Math.min(ioBuffer.capacity() / 4, run.length - from);
+                ioBuffer.asIntBuffer().put(run, from, count);
+                ioBuffer.position(4 * count);
+                from += count;
+                drain(out, ioBuffer);
+            }
+        }
+        
+        /** Writes out everything put into {@code buffer} and clears it; returns the bytes written. */
+        private static long drain(FileChannel out, ByteBuffer buffer) throws IOException {
+            buffer.flip();
+            long bytes = buffer.remaining();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+            return bytes;
+        }
+        
+        private void checkCancelled() throws IOException {
+            if (cancelled) {
+                throw new java.io.InterruptedIOException("External sort cancelled");
+            }
+        }
+        
+        /** Reads one sorted run through its own direct buffer. */
+        static final class RunReader implements java.io.Closeable {
+            private final FileChannel channel;
+            private final ByteBuffer buffer;
+            private final long size;
+            private long position;
+            
+            RunReader(Path file, ByteBuffer buffer) throws IOException {
+                this.channel = FileChannel.open(file, StandardOpenOption.READ);
+                this.buffer = buffer;
+                this.size = channel.size();
+                buffer.clear().limit(0);
+            }
+            
+            boolean hasNext() throws IOException {
+                return buffer.hasRemaining() || fill();
+            }
+            
+            int next() {
+                return buffer.getInt();
+            }
+            
+            // Fills the whole buffer; run files and buffers are whole ints, so no int is split.
+            private boolean fill() throws IOException {
+                buffer.clear();
+                while (buffer.hasRemaining() && position < size) {
+                    position += channel.read(buffer, position);
+                }
+                buffer.flip();
+                return buffer.hasRemaining();
+            }
+            
+            /** Writes the buffered rest of the run, then copies the unread rest file to file; returns the bytes. */
+            long transferRest(FileChannel out) throws IOException {
+                long bytes = buffer.remaining();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                while (position < size) {
+                    long copied = channel.transferTo(position, size - position, out);
+                    position += copied;
+                    bytes += copied;
+                }
+                return bytes;
+            }
+            
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        }
+    }
+    
+    /**
+     * Ints indexed by {@code long} and kept outside the Java heap, for inputs past the 2^31 element
+     * limit of {@code int[]}. The collector never scans or copies the elements, so a multi-gigabyte
+     * array costs no full-GC pauses. {@link #allocate} uses the Foreign Memory API implementation in
+     * SegmentIntArray.java when that file has been compiled (it needs JDK 22) and falls back to
+     * {@link DirectIntArray} otherwise. Not thread-safe.
+     */
+    interface LargeIntArray extends AutoCloseable {
+        long length();
+        
+        int get(long index);
+        
+        void set(long index, int value);
+        
+        default void swap(long i, long j) {
+            int value = get(i);
+            set(i, get(j));
+            set(j, value);
+        }
+        
+        /** A new zero-filled array of the same kind, for scratch space. */
+        LargeIntArray allocateLike(long length);
+        
+        /** "segment" or "buffers", for reports. */
+        String kind();
+        
+        /** Releases the memory; the array must not be used afterwards. */
+        @Override
+        void close();
+        
+        /** A zero-filled array of {@code length} ints, in a memory segment when the JVM supports it. */
+        static LargeIntArray allocate(long length) {
+            return allocate(length, true);
+        }
+        
+        static LargeIntArray allocate(long length, boolean preferSegment) {
+            if (preferSegment) {
+                try {
+                    return (LargeIntArray) Class.forName("SegmentIntArray").getConstructor(long.class).newInstance(length);
+                } catch (InvocationTargetException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                } catch (ReflectiveOperationException | LinkageError e) {
+                    // Not compiled, or compiled for a newer JDK than this one
+                }
+            }
+            return new DirectIntArray(length);
+        }
+    }
+    
+    /**
+     * {@link LargeIntArray} over direct buffers of 2^28 ints (1 GB) each, in native byte order; runs
+     * on any JDK. Direct memory is capped by {@code -XX:MaxDirectMemorySize}, which defaults to the
+     * maximum heap size, so big arrays need it raised. The buffers are freed once collected;
+     * {@link #close} only drops them.
+     */
+    static final class DirectIntArray implements LargeIntArray {
+        static final int DEFAULT_CHUNK_SHIFT = 28;
+        
+        private final long length;
+        private final int shift;
+        private final int mask;
+        private final IntBuffer[] chunks;
+        
+        DirectIntArray(long length) {
+            this(length, DEFAULT_CHUNK_SHIFT);
+        }
+        
+        /** 2^{@code chunkShift} ints per buffer; small shifts put chunk boundaries within reach of tests. */
+        DirectIntArray(long length, int chunkShift) {
+            if (length < 0 || chunkShift < 1 || chunkShift > DEFAULT_CHUNK_SHIFT) {
+                throw new IllegalArgumentException("Bad length or chunk shift: " + length + ", " + chunkShift);
+            }
+            this.length = length;
+            this.shift = chunkShift;
+            this.mask = (1 << chunkShift) - 1;
+            this.chunks = new IntBuffer[(int) ((length + mask) >>> chunkShift)];
+            for (int c = 0; c < chunks.length; c++) {
+                int ints = (int) Math.min(1L << chunkShift, length - ((long) c << chunkShift));
+                chunks[c] = ByteBuffer.allocateDirect(ints * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+            }
+        }
+        
+        @Override
+        public long length() {
+            return length;
+        }
+        
+        @Override
+        public int get(long index) {
+            return chunks[(int) (index >>> shift)].get((int) index & mask);
+        }
+        
+        @Override
+        public void set(long index, int value) {
+            chunks[(int) (index >>> shift)].put((int) index & mask, value);
+        }
+        
+        @Override
+        public LargeIntArray allocateLike(long length) {
+            return new DirectIntArray(length, shift);
+        }
+        
+        @Override
+        public String kind() {
+            return "buffers";
+        }
+        
+        @Override
+        public void close() {
+            Arrays.fill(chunks, null);
+        }
+    }
+    
+    /**
+     * Merge, quick, heap and radix sorts with {@code long} indices over a {@link LargeIntArray}, for
+     * arrays too big for the {@code int[]} engines. They run without a sink, so there is no
+     * visualization or metrics; merge and radix-lsd allocate one scratch array of the same size and
+     * kind, the others sort in place.
+     */
+    static final class LargeSorts {
+        static final String[] ENGINES = {"merge", "quick", "heap", "radix-lsd", "radix-msd"};
+        
+        private static final int INSERTION_CUTOFF = 32;
+        private static final String USAGE = "usage: --large <engine> <count> [--buffers] [--seed n]";
+        
+        private LargeSorts() {
+        }
+        
+        static void sort(String engine, LargeIntArray array) {
+            switch (engine) {
+                case "merge":
+                    mergeSort(array);
+                    break;
+                case "quick":
+                    quickSort(array);
+                    break;
+                case "heap":
+                    heapSort(array, 0, array.length());
+                    break;
+                case "radix-lsd":
+                    lsdRadixSort(array);
+                    break;
+                case "radix-msd":
+                    msdRadixSort(array, 0, array.length(), 24, new long[3 * 4][256]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown algorithm: " + engine);
+            }
+        }
+        
+        public static void main(String[] args) {
+            if (args.length < 3) {
+                System.err.println(USAGE);
+                System.exit(2);
+            }
+            String engine = args[1];
+            long count = Long.parseLong(args[2]);
+            boolean buffers = false;
+            long seed = 42;
+            for (int i = 3; i < args.length; i++) {
+                if (args[i].equals("--buffers")) {
+                    buffers = true;
+                } else if (args[i].equals("--seed") && i + 1 < args.length) {
+                    seed = Long.parseLong(args[++i]);
+                } else {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.err.println(USAGE);
+                    System.exit(2);
+                }
+            }
+            
+            try (LargeIntArray array = LargeIntArray.allocate(count, !buffers)) {
+                SplittableRandom random = new SplittableRandom(seed);
+                for (long i = 0; i < count; i++) {
+                    array.set(i, random.nextInt());
+                }
+                long collections = gcCount();
+                long gcMillis = gcMillis();
+                long start = System.nanoTime();
+                sort(engine, array);
+                long nanos = System.nanoTime() - start;
+                System.out.printf("%s sorted %,d ints (%s) in %.2f s, %d GCs taking %d ms, %s%n", engine, count,
+                    array.kind(), nanos / 1e9, gcCount() - collections, gcMillis() - gcMillis,
+                    isSorted(array) ? "verified" : "NOT SORTED");
+            }
+        }
+        
+        static boolean isSorted(LargeIntArray array) {
+            for (long i = 1; i < array.length(); i++) {
+                if (array.get(i - 1) > array.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private static long gcCount() {
+            long total = 0;
+            for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+                total += Math.max(0, bean.getCollectionCount());
+            }
+            return total;
+        }
+        
+        private static long gcMillis() {
+            long total = 0;
+            for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+                total += Math.max(0, bean.getCollectionTime());
+            }
+            return total;
+        }
+        
+        // Bottom-up: insertion-sorted blocks, then passes that double the width, ping-ponging with the buffer.
+        private static void mergeSort(LargeIntArray array) {
+            long n = array.length();
+            for (long lo = 0; lo < n; lo += INSERTION_CUTOFF) {
+                insertionSort(array, lo, Math.min(lo + INSERTION_CUTOFF, n));
+            }
+            if (n <= INSERTION_CUTOFF) {
+                return;
+            }
+            try (LargeIntArray buffer = array.allocateLike(n)) {
+                LargeIntArray from = array;
+                LargeIntArray to = buffer;
+                for (long width = INSERTION_CUTOFF; width < n; width <<= 1) {
+                    for (long lo = 0; lo < n; lo += width << 1) {
+                        merge(from, to, lo, Math.min(lo + width, n), Math.min(lo + (width << 1), n));
+                    }
+                    LargeIntArray swap = from;
+                    from = to;
+                    to = swap;
+                }
+                if (from != array) {
+                    copy(from, array, n);
+                }
+            }
+        }
+        
+        private static void merge(LargeIntArray from, LargeIntArray to, long lo, long mid, long hi) {
+            long i = lo;
+            long j = mid;
+            for (long k = lo; k < hi; k++) {
+                if (j >= hi || (i < mid && from.get(i) <= from.get(j))) {
+                    to.set(k, from.get(i++));
+                } else {
+                    to.set(k, from.get(j++));
+                }
+            }
+        }
+        
+        // Median-of-three Hoare quicksort, recursing into the smaller side; a range that has been
+        // split badly 2 log2(n) times is heap-sorted instead, so no input makes it quadratic.
+        private static void quickSort(LargeIntArray array) {
+            long n = array.length();
+            quickSort(array, 0, n - 1, 2 * (64 - Long.numberOfLeadingZeros(Math.max(1, n))));
+        }
+        
+        private static void quickSort(LargeIntArray array, long lo, long hi, int depth) {
+            while (hi - lo >= INSERTION_CUTOFF) {
+                if (depth-- == 0) {
+                    heapSort(array, lo, hi + 1);
+                    return;
+                }
+                long split = partition(array, lo, hi);
+                if (split - lo < hi - split) {
+                    quickSort(array, lo, split, depth);
+                    lo = split + 1;
+                } else {
+                    quickSort(array, split + 1, hi, depth);
+                    hi = split;
+                }
+            }
+            insertionSort(array, lo, hi + 1);
+        }
+        
+        // Orders lo, mid and hi so the pivot at mid is neither side's only element; returns j with
+        // [lo, j] <= pivot <= [j + 1, hi] and lo <= j < hi.
+        private static long partition(LargeIntArray array, long lo, long hi) {
+            long mid = lo + ((hi - lo) >>> 1);
+            if (array.get(mid) < array.get(lo)) {
+                array.swap(mid, lo);
+            }
+            if (array.get(hi) < array.get(lo)) {
+                array.swap(hi, lo);
+            }
+            if (array.get(hi) < array.get(mid)) {
+                array.swap(hi, mid);
+            }
+            int pivot = array.get(mid);
+            long i = lo - 1;
+            long j = hi + 1;
+            while (true) {
+                do {
+                    i++;
+                } while (array.get(i) < pivot);
+                do {
+                    j--;
+                } while (array.get(j) > pivot);
+                if (i >= j) {
+                    return j;
+                }
+                array.swap(i, j);
+            }
+        }
+        
+        private static void heapSort(LargeIntArray array, long lo, long hi) {
+            long n = hi - lo;
+            for (long i = (n >>> 1) - 1; i >= 0; i--) {
+                siftDown(array, lo, i, n);
+            }
+            for (long end = n - 1; end > 0; end--) {
+                array.swap(lo, lo + end);
+                siftDown(array, lo, 0, end);
+            }
+        }
+        
+        private static void siftDown(LargeIntArray array, long base, long i, long n) {
+            int value = array.get(base + i);
+            while (true) {
+                long child = 2 * i + 1;
+                if (child >= n) {
+                    break;
+                }
+                if (child + 1 < n && array.get(base + child + 1) > array.get(base + child)) {
+                    child++;
+                }
+                int larger = array.get(base + child);
+                if (larger <= value) {
+                    break;
+                }
+                array.set(base + i, larger);
+                i = child;
+            }
+            array.set(base + i, value);
+        }
+        
+        // Four byte-wide passes from one counting pass; a digit every key shares is skipped.
+        private static void lsdRadixSort(LargeIntArray array) {
+            long n = array.length();
+            if (n < 2) {
+                return;
+            }
+            long[][] counts = new long[4][256];
+            for (long i = 0; i < n; i++) {
+                int key = array.get(i) ^ Integer.MIN_VALUE;
+                counts[0][key & 0xFF]++;
+                counts[1][(key >>> 8) & 0xFF]++;
+                counts[2][(key >>> 16) & 0xFF]++;
+                counts[3][key >>> 24]++;
+            }
+            try (LargeIntArray buffer = array.allocateLike(n)) {
+                LargeIntArray from = array;
+                LargeIntArray to = buffer;
+                for (int pass = 0; pass < 4; pass++) {
+                    long[] offsets = counts[pass];
+                    if (offsets[digit(from.get(0), pass * 8)] == n) {
+                        continue;
+                    }
+                    long start = 0;
+                    for (int d = 0; d < 256; d++) {
+                        long count = offsets[d];
+                        offsets[d] = start;
+                        start += count;
+                    }
+                    for (long i = 0; i < n; i++) {
+                        int value = from.get(i);
+                        to.set(offsets[digit(value, pass * 8)]++, value);
+                    }
+                    LargeIntArray swap = from;
+                    from = to;
+                    to = swap;
+                }
+                if (from != array) {
+                    copy(from, array, n);
+                }
+            }
+        }
+        
+        // American flag sort: buckets are permuted in place by following cycles, then each is
+        // sorted on the next byte down. Every level reuses its own count, head and tail rows of
+        // scratch, so the recursion allocates nothing.
+        private static void msdRadixSort(LargeIntArray array, long lo, long hi, int shift, long[][] scratch) {
+            if (hi - lo <= INSERTION_CUTOFF) {
+                insertionSort(array, lo, hi);
+                return;
+            }
+            int level = (24 - shift) / 8;
+            long[] counts = scratch[3 * level];
+            long[] heads = scratch[3 * level + 1];
+            long[] tails = scratch[3 * level + 2];
+            Arrays.fill(counts, 0);
+            for (long i = lo; i < hi; i++) {
+                counts[digit(array.get(i), shift)]++;
+            }
+            long start = lo;
+            for (int d = 0; d < 256; d++) {
+                heads[d] = start;
+                start += counts[d];
+                tails[d] = start;
+            }
+            for (int d = 0; d < 256; d++) {
+                while (heads[d] < tails[d]) {
+                    int value = array.get(heads[d]);
+                    int target = digit(value, shift);
+                    while (target != d) {
+                        long slot = heads[target]++;
+                        int displaced = array.get(slot);
+                        array.set(slot, value);
+                        value = displaced;
+                        target = digit(value, shift);
+                    }
+                    array.set(heads[d]++, value);
+                }
+            }
+            if (shift > 0) {
+                for (int d = 0; d < 256; d++) {
+                    if (counts[d] > 1) {
+                        msdRadixSort(array, tails[d] - counts[d], tails[d], shift - 8, scratch);
+                    }
+                }
+            }
+        }
+        
+        private static int digit(int value, int shift) {
+            return ((value ^ Integer.MIN_VALUE) >>> shift) & 0xFF;
+        }
+        
+        private static void insertionSort(LargeIntArray array, long lo, long hi) {
+            for (long i = lo + 1; i < hi; i++) {
+                int value = array.get(i);
+                long j = i - 1;
+                while (j >= lo && array.get(j) > value) {
+                    array.set(j + 1, array.get(j));
+                    j--;
+                }
+                array.set(j + 1, value);
+            }
+        }
+        
+        private static void copy(LargeIntArray from, LargeIntArray to, long n) {
+            for (long i = 0; i < n; i++) {
+                to.set(i, from.get(i));
+            }
+        }
+    }
+    
+    /**
+     * Run-level view of an {@link ExternalMergeSort}: one row per level, the sorted runs on top and
+     * each merge pass below, every run drawn to scale over the file with the part already written
+     * filled in and the run being worked on outlined.
+     */
+    static final class ExternalSortPanel extends JPanel implements ExternalMergeSort.Listener {
+        private static final Color PENDING_COLOR = new Color(236, 240, 241);
+        private static final Color RUN_COLOR = new Color(52, 152, 219);
+        private static final Color MERGED_COLOR = new Color(39, 174, 96);
+        private static final Color ACTIVE_COLOR = new Color(231, 76, 60);
+        private static final int ROW_HEIGHT = 48;
+        
+        private final List<long[]> levels = new ArrayList<>();
+        private final List<long[]> written = new ArrayList<>();
+        private int activeLevel = -1;
+        private int activeRun = -1;
+        
+        ExternalSortPanel() {
+            setBackground(Color.WHITE);
+            setPreferredSize(new Dimension(900, 400));
+        }
+        
+        synchronized void clear() {
+            levels.clear();
+            written.clear();
+            activeLevel = -1;
+            activeRun = -1;
+            repaint();
+        }
+        
+        @Override
+        public synchronized void level(int level, long[] boundaries) {
+            while (levels.size() <= level) {
+                levels.add(null);
+                written.add(null);
             }
+            levels.set(level, boundaries.clone());
+            written.set(level, new long[boundaries.length - 1]);
+            repaint();
         }
-    }
-    
-    class InsertionSort implements SortingAlgorithm {
+        
         @Override
-        public void sort(int[] array, VisualizationPanel panel) {
-            int n = array.length;
-            
-            for (int i = 1; i < n && panel.isSorting(); i++) {
-                int key = array[i];
-                int j = i - 1;
-                
-                panel.updateVisualization(i, -1, -1, -1);
-                
-                while (j >= 0 && array[j] > key && panel.isSorting()) {
-                    panel.updateVisualization(j, j + 1, -1, -1);
-                    array[j + 1] = array[j];
-                    j--;
-                    
-                    if (j >= 0) {
-                        panel.updateVisualization(j + 1, j + 2, -1, -1);
+        public synchronized void progress(int level, int run, long done) {
+            written.get(level)[run] = done;
+            activeLevel = level;
+            activeRun = run;
+            repaint();
+        }
+        
+        @Override
+        protected synchronized void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            Graphics2D g2d = (Graphics2D) g;
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            int width = getWidth() - 40;
+            if (levels.isEmpty() || width <= 0) {
+                g2d.setColor(Color.GRAY);
+                g2d.drawString("Choose an input file and start the sort.", 20, 30);
+                return;
+            }
+            long[] first = levels.get(0);
+            long total = Math.max(1, first[first.length - 1]);
+            int rowHeight = Math.max(20, Math.min(ROW_HEIGHT, (getHeight() - 20) / levels.size() - 24));
+            int y = 10;
+            for (int level = 0; level < levels.size(); level++) {
+                long[] boundaries = levels.get(level);
+                long[] done = written.get(level);
+                if (boundaries == null) continue;
+                g2d.setColor(Color.BLACK);
+                g2d.setFont(new Font("Arial", Font.BOLD, 13));
+                g2d.drawString(level == 0 ? String.format("Runs sorted in memory (%d)", done.length)
+                    : String.format("Merge pass %d (%d output run%s)", level, done.length, done.length == 1 ? "" : "s"),
+                    20, y + 14);
+                y += 20;
+                Color fill = level == 0 ? RUN_COLOR : MERGED_COLOR;
+                for (int run = 0; run < done.length; run++) {
+                    int x = 20 + (int) (boundaries[run] * width / total);
+                    int right = 20 + (int) (boundaries[run + 1] * width / total);
+                    long length = boundaries[run + 1] - boundaries[run];
+                    g2d.setColor(PENDING_COLOR);
+                    g2d.fillRect(x, y, Math.max(1, right - x), rowHeight);
+                    if (length > 0 && done[run] > 0) {
+                        g2d.setColor(fill);
+                        g2d.fillRect(x, y, Math.max(1, (int) ((right - x) * done[run] / length)), rowHeight);
+                    }
+                    if (right - x > 3) {
+                        g2d.setColor(Color.WHITE);
+                        g2d.drawLine(right - 1, y, right - 1, y + rowHeight);
                     }
                 }
-                
-                if (panel.isSorting()) {
-                    array[j + 1] = key;
-                    panel.updateVisualization(j + 1, -1, i, -1);
+                if (level == activeLevel && activeRun >= 0 && activeRun < done.length) {
+                    int x = 20 + (int) (boundaries[activeRun] * width / total);
+                    int right = 20 + (int) (boundaries[activeRun + 1] * width / total);
+                    g2d.setColor(ACTIVE_COLOR);
+                    g2d.setStroke(new BasicStroke(2));
+                    g2d.drawRect(x, y, Math.max(2, right - x - 1), rowHeight);
+                    g2d.setStroke(new BasicStroke(1));
                 }
+                y += rowHeight + 4;
             }
         }
     }
     
-    class MergeSort implements SortingAlgorithm {
-        private VisualizationPanel panel;
-        
-        @Override
-        public void sort(int[] array, VisualizationPanel panel) {
-            this.panel = panel;
-            mergeSort(array, 0, array.length - 1);
-        }
+    /**
+     * Race mode: the same input cloned into one panel per selected algorithm, all sorted at once
+     * on a dedicated executor (virtual threads when the JDK has them) and paced by one shared
+     * {@link FrameClock}. The leaderboard lists runs in the order their playback finishes, with
+     * each sort's wall time and operation counts.
+     */
+    class RaceWindow extends JFrame {
+        private static final long MAX_ELEMENTS = 50_000_000;
         
-        private void mergeSort(int[] array, int left, int right) {
-            if (left < right && panel.isSorting()) {
-                int middle = left + (right - left) / 2;
-                panel.updateVisualization(left, right, -1, middle);
-                
-                mergeSort(array, left, middle);
-                mergeSort(array, middle + 1, right);
-                merge(array, left, middle, right);
+        private final int[] input;
+        private final double stepsPerSecond;
+        private final int framesPerSecond;
+        private final List<JCheckBox> choices = new ArrayList<>();
+        private final List<VisualizationPanel> panels = new ArrayList<>();
+        private final JPanel grid = new JPanel();
+        private final DefaultTableModel leaderboard = new DefaultTableModel(
+            new String[] {"🏁", "Algorithm", "Sort ms", "Comparisons", "Swaps", "Reads", "Writes"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
             }
-        }
+        };
+        private final JButton raceButton = new JButton("🏁 Start Race");
+        private final JLabel raceStatus = new JLabel(" ");
+        private FrameClock clock;
+        private ExecutorService executor;
+        private int running;
         
-        private void merge(int[] array, int left, int middle, int right) {
-            if (!panel.isSorting()) return;
+        RaceWindow(int[] input, String[] algorithms, double stepsPerSecond, int framesPerSecond) {
+            super("🏁 Race Mode");
+            this.input = input;
+            this.stepsPerSecond = stepsPerSecond;
+            this.framesPerSecond = framesPerSecond;
             
-            int[] leftArray = new int[middle - left + 1];
-            int[] rightArray = new int[right - middle];
-            
-            for (int i = 0; i < leftArray.length; i++) {
-                leftArray[i] = array[left + i];
-            }
-            for (int j = 0; j < rightArray.length; j++) {
-                rightArray[j] = array[middle + 1 + j];
+            JPanel choicePanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 4));
+            choicePanel.setBackground(new Color(236, 240, 241));
+            for (int i = 0; i < algorithms.length; i++) {
+                JCheckBox choice = new JCheckBox(algorithms[i], i >= 3 && i < 7);
+                choice.setBackground(choicePanel.getBackground());
+                choices.add(choice);
+                choicePanel.add(choice);
             }
+            styleButton(raceButton, new Color(39, 174, 96));
+            raceButton.addActionListener(e -> startRace());
+            choicePanel.add(raceButton);
+            choicePanel.add(raceStatus);
             
-            int i = 0, j = 0, k = left;
+            JTable table = new JTable(leaderboard);
+            table.setFont(new Font("Arial", Font.PLAIN, 13));
+            JScrollPane scores = new JScrollPane(table);
+            scores.setPreferredSize(new Dimension(0, 150));
+            scores.setBorder(BorderFactory.createTitledBorder("🏆 Leaderboard"));
             
-            while (i < leftArray.length && j < rightArray.length && panel.isSorting()) {
-                panel.updateVisualization(left + i, middle + 1 + j, k - 1, -1);
-                
-                if (leftArray[i] <= rightArray[j]) {
-                    array[k] = leftArray[i];
-                    i++;
-                } else {
-                    array[k] = rightArray[j];
-                    j++;
+            setLayout(new BorderLayout());
+            add(choicePanel, BorderLayout.NORTH);
+            add(grid, BorderLayout.CENTER);
+            add(scores, BorderLayout.SOUTH);
+            setSize(1200, 850);
+            setLocationRelativeTo(SortingVisualizerComplete.this);
+            setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+            addWindowListener(new java.awt.event.WindowAdapter() {
+                @Override
+                public void windowClosed(java.awt.event.WindowEvent e) {
+                    stopRace();
                 }
-                k++;
-                panel.updateVisualization(k - 1, -1, k - 1, -1);
+            });
+        }
+        
+        private void startRace() {
+            List<String> selected = new ArrayList<>();
+            for (JCheckBox choice : choices) {
+                if (choice.isSelected()) selected.add(choice.getText());
+            }
+            if (selected.isEmpty()) {
+                raceStatus.setText("Select at least one algorithm.");
+                return;
             }
+            if ((long) input.length * selected.size() > MAX_ELEMENTS) {
+                raceStatus.setText(String.format("⚠️ %,d elements × %d panels is too large to race.",
+                    input.length, selected.size()));
+                return;
+            }
+            stopRace();
+            leaderboard.setRowCount(0);
+            panels.clear();
+            grid.removeAll();
+            int columns = (int) Math.ceil(Math.sqrt(selected.size()));
+            grid.setLayout(new GridLayout(0, columns, 6, 6));
             
-            while (i < leftArray.length && panel.isSorting()) {
-                array[k] = leftArray[i];
-                panel.updateVisualization(k, -1, k, -1);
-                i++;
-                k++;
+            clock = new FrameClock(framesPerSecond);
+            executor = raceExecutor();
+            running = selected.size();
+            raceButton.setEnabled(false);
+            raceStatus.setText("Racing " + running + " algorithms...");
+            for (String name : selected) {
+                VisualizationPanel panel = new VisualizationPanel();
+                panel.setPreferredSize(new Dimension(300, 200));
+                panel.setArraySize(input.length);
+                panel.loadArray(input);
+                panel.setStepsPerSecond(stepsPerSecond);
+                panel.useFrameClock(clock);
+                panel.setBorder(BorderFactory.createTitledBorder(name));
+                panels.add(panel);
+                grid.add(panel);
             }
+            grid.revalidate();
+            grid.repaint();
+            clock.start();
             
-            while (j < rightArray.length && panel.isSorting()) {
-                array[k] = rightArray[j];
-                panel.updateVisualization(k, -1, k, -1);
-                j++;
-                k++;
+            for (int i = 0; i < selected.size(); i++) {
+                String name = selected.get(i);
+                VisualizationPanel panel = panels.get(i);
+                SortMetrics metrics = new SortMetrics(name, input.length);
+                panel.startSorting(createEngine(name), metrics, executor, () -> finish(panel, metrics));
             }
         }
-    }
-    
-    class QuickSort implements SortingAlgorithm {
-        private VisualizationPanel panel;
-        
-        @Override
-        public void sort(int[] array, VisualizationPanel panel) {
-            this.panel = panel;
-            quickSort(array, 0, array.length - 1);
-        }
         
-        private void quickSort(int[] array, int low, int high) {
-            if (low < high && panel.isSorting()) {
-                int pivotIndex = partition(array, low, high);
-                
-                if (panel.isSorting()) {
-                    panel.updateVisualization(-1, -1, pivotIndex, pivotIndex);
-                }
-                
-                quickSort(array, low, pivotIndex - 1);
-                quickSort(array, pivotIndex + 1, high);
+        private void finish(VisualizationPanel panel, SortMetrics metrics) {
+            if (!panels.contains(panel)) return;
+            int place = leaderboard.getRowCount() + 1;
+            panel.setBorder(BorderFactory.createTitledBorder("#" + place + " " + metrics.algorithm()));
+            leaderboard.addRow(new Object[] {
+                place, metrics.algorithm(), String.format("%.2f", metrics.elapsedNanos() / 1e6),
+                String.format("%,d", metrics.comparisons()), String.format("%,d", metrics.swaps()),
+                String.format("%,d", metrics.reads()), String.format("%,d", metrics.writes())
+            });
+            if (--running == 0) {
+                raceStatus.setText("🏆 " + leaderboard.getValueAt(0, 1) + " wins!");
+                stopRace();
             }
         }
         
-        private int partition(int[] array, int low, int high) {
-            int pivot = array[high];
-            int i = low - 1;
-            
-            for (int j = low; j < high && panel.isSorting(); j++) {
-                panel.updateVisualization(j, high, -1, high);
-                
-                if (array[j] <= pivot) {
-                    i++;
-                    panel.swap(i, j);
-                    panel.updateVisualization(i, j, -1, high);
-                }
+        private void stopRace() {
+            for (VisualizationPanel panel : panels) {
+                panel.stopSorting();
+                panel.useFrameClock(null);
             }
-            
-            if (panel.isSorting()) {
-                panel.swap(i + 1, high);
-                panel.updateVisualization(i + 1, high, -1, i + 1);
+            if (clock != null) {
+                clock.stop();
+                clock = null;
             }
-            
-            return i + 1;
+            if (executor != null) {
+                executor.shutdown();
+                executor = null;
+            }
+            raceButton.setEnabled(true);
         }
     }
     
-    class HeapSort implements SortingAlgorithm {
-        private VisualizationPanel panel;
+    /**
+     * Sorts a file of raw ints with {@link ExternalMergeSort} in the background and shows run
+     * formation and every merge pass in an {@link ExternalSortPanel}.
+     */
+    class ExternalSortWindow extends JFrame {
+        private final ExternalSortPanel view = new ExternalSortPanel();
+        private final JComboBox<String> engineSelector = new JComboBox<>();
+        private final JComboBox<String> runSelector = new JComboBox<>(new String[] {"1M", "4M", "16M", "64M"});
+        private final JCheckBox littleEndian = new JCheckBox("Little-endian");
+        private final JButton sortButton = new JButton("🗄️ Sort File...");
+        private final JButton cancelButton = new JButton("⏹️ Cancel");
+        private final JLabel status = new JLabel(" ");
+        private ExternalMergeSort running;
         
-        @Override
-        public void sort(int[] array, VisualizationPanel panel) {
-            this.panel = panel;
-            int n = array.length;
-            
-            for (int i = n / 2 - 1; i >= 0 && panel.isSorting(); i--) {
-                heapify(array, n, i);
+        ExternalSortWindow() {
+            super("🗄️ External Merge Sort");
+            for (String engine : SortEngines.names()) {
+                if (!engine.equals("bubble") && !engine.equals("selection") && !engine.equals("insertion")) {
+                    engineSelector.addItem(engine);
+                }
             }
+            engineSelector.setSelectedItem(ExternalMergeSort.DEFAULT_ENGINE);
+            runSelector.setSelectedIndex(2);
+            runSelector.setToolTipText("Ints per in-memory run; the run and the engine's buffer must fit on the heap");
             
-            for (int i = n - 1; i > 0 && panel.isSorting(); i--) {
-                panel.updateVisualization(0, i, i, 0);
-                panel.swap(0, i);
-                panel.markSorted(i);
-                heapify(array, i, 0);
-            }
+            JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 4));
+            controls.setBackground(new Color(236, 240, 241));
+            littleEndian.setBackground(controls.getBackground());
+            styleButton(sortButton, new Color(39, 174, 96));
+            styleButton(cancelButton, new Color(231, 76, 60));
+            cancelButton.setEnabled(false);
+            sortButton.addActionListener(e -> startSort());
+            cancelButton.addActionListener(e -> cancelSort());
+            controls.add(new JLabel("Run engine:"));
+            controls.add(engineSelector);
+            controls.add(new JLabel("Run size:"));
+            controls.add(runSelector);
+            controls.add(littleEndian);
+            controls.add(sortButton);
+            controls.add(cancelButton);
+            status.setBorder(BorderFactory.createEmptyBorder(4, 8, 4, 8));
             
-            if (panel.isSorting()) {
-                panel.markSorted(0);
-            }
+            setLayout(new BorderLayout());
+            add(controls, BorderLayout.NORTH);
+            add(new JScrollPane(view), BorderLayout.CENTER);
+            add(status, BorderLayout.SOUTH);
+            setSize(1000, 520);
+            setLocationRelativeTo(SortingVisualizerComplete.this);
+            setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+            addWindowListener(new java.awt.event.WindowAdapter() {
+                @Override
+                public void windowClosed(java.awt.event.WindowEvent e) {
+                    cancelSort();
+                }
+            });
         }
         
-        private void heapify(int[] array, int n, int root) {
-            if (!panel.isSorting()) return;
-            
-            int largest = root;
-            int left = 2 * root + 1;
-            int right = 2 * root + 2;
-            
-            panel.updateVisualization(root, -1, -1, root);
+        private void startSort() {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setDialogTitle("File of 32-bit ints to sort");
+            if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+            Path input = chooser.getSelectedFile().toPath();
+            chooser.setDialogTitle("Sorted output");
+            chooser.setSelectedFile(new java.io.File(chooser.getSelectedFile().getPath() + ".sorted"));
+            if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+            Path output = chooser.getSelectedFile().toPath();
             
-            if (left < n && panel.isSorting()) {
-                panel.updateVisualization(left, largest, -1, root);
-                if (array[left] > array[largest]) {
-                    largest = left;
+            int runElements = Integer.parseInt(((String) runSelector.getSelectedItem()).replace("M", "")) << 20;
+            ExternalMergeSort sort = new ExternalMergeSort((String) engineSelector.getSelectedItem(), runElements,
+                ExternalMergeSort.DEFAULT_FAN_IN, null,
+                littleEndian.isSelected() ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            view.clear();
+            sort.setListener(view);
+            running = sort;
+            sortButton.setEnabled(false);
+            cancelButton.setEnabled(true);
+            status.setText("🗄️ Sorting " + input.getFileName() + "...");
+            new SwingWorker<String, Void>() {
+                @Override
+                protected String doInBackground() throws IOException {
+                    long nanos = sort.sort(input, output);
+                    return String.format("✅ Sorted %s into %s: %d runs, %d merge passes, %,d MB spilled, %.1f s",
+                        input.getFileName(), output.getFileName(), sort.runs(), sort.passes(),
+                        sort.spilledBytes() >> 20, nanos / 1e9);
                 }
-            }
-            
-            if (right < n && panel.isSorting()) {
-                panel.updateVisualization(right, largest, -1, root);
-                if (array[right] > array[largest]) {
-                    largest = right;
+                
+                @Override
+                protected void done() {
+                    running = null;
+                    sortButton.setEnabled(true);
+                    cancelButton.setEnabled(false);
+                    try {
+                        status.setText(get());
+                    } catch (Exception ex) {
+                        Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                        status.setText("⚠️ External sort failed: " + cause.getMessage());
+                    }
                 }
-            }
-            
-            if (largest != root && panel.isSorting()) {
-                panel.updateVisualization(root, largest, -1, root);
-                panel.swap(root, largest);
-                heapify(array, n, largest);
+            }.execute();
+        }
+        
+        private void cancelSort() {
+            ExternalMergeSort sort = running;
+            if (sort != null) {
+                sort.cancel();
             }
         }
     }
     
-
+    /** Virtual threads on JDK 21+, otherwise a cached pool of daemon threads; never the SwingWorker pool. */
+    static ExecutorService raceExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger threads = new AtomicInteger();
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "race-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+    
+    /** A fresh engine for a selector name, since the algorithm objects keep per-run state. */
+    static SortingAlgorithm createEngine(String algorithmName) {
+        switch (algorithmName) {
+            case "Bubble Sort":
+                return SortEngines.create("bubble");
+            case "Selection Sort":
+                return SortEngines.create("selection");
+            case "Insertion Sort":
+                return SortEngines.create("insertion");
+            case "Merge Sort":
+                return SortEngines.create("merge");
+            case "Bottom-Up Merge Sort":
+                return SortEngines.create("merge-buffered");
+            case "Quick Sort":
+                return SortEngines.create("quick");
+            case "Heap Sort":
+                return SortEngines.create("heap");
+            case "Parallel Merge Sort":
+                return SortEngines.create("parallel-merge");
+            case "Parallel Quick Sort":
+                return SortEngines.create("parallel-quick");
+            case "Dual-Pivot Quick Sort":
+                return SortEngines.create("dual-pivot-quick");
+            case "Intro Sort":
+                return SortEngines.create("intro");
+            case "LSD Radix Sort":
+                return SortEngines.create("radix-lsd");
+            case "MSD Radix Sort":
+                return SortEngines.create("radix-msd");
+            case "Hybrid Merge Sort":
+                return SortEngines.create("hybrid-merge");
+            case "Hybrid Quick Sort":
+                return SortEngines.create("hybrid-quick");
+            case "Bitonic Sort":
+                return SortEngines.create("parallel-bitonic");
+            case "Odd-Even Merge Sort":
+                return SortEngines.create("parallel-odd-even");
+            case "3-Way Quick Sort":
+                return SortEngines.create("quick-3way");
+            case "Auto":
+                return SortEngines.create("auto");
+            default:
+                throw new IllegalArgumentException("Unknown algorithm: " + algorithmName);
+        }
+    }
+    
     private VisualizationPanel visualizationPanel;
     private JComboBox<String> algorithmSelector;
     private JSlider speedSlider;
+    private JComboBox<String> frameRateSelector;
+    private JComboBox<InputDistribution> distributionSelector;
+    private JComboBox<String> overlaySelector;
     private JSlider sizeSlider;
     private JButton startButton;
     private JButton resetButton;
     private JButton shuffleButton;
+    private JButton exportButton;
+    private JButton raceButton;
+    private JButton externalSortButton;
     private JLabel speedLabel;
     private JLabel sizeLabel;
     private JLabel statusLabel;
     private JLabel complexityLabel;
+    private JLabel metricsLabel;
+    private final Timer runTimer = new Timer(100, null);
+    private JButton stepBackButton;
+    private JButton pauseButton;
+    private JButton stepButton;
+    private JSlider timelineSlider;
+    private JLabel timelineLabel;
+    private JButton saveTraceButton;
+    private JButton playTraceButton;
+    private boolean updatingTimeline;
+    private final List<SortMetrics> completedRuns = new ArrayList<>();
     
     private BubbleSort bubbleSort;
     private SelectionSort selectionSort;
     private InsertionSort insertionSort;
     private MergeSort mergeSort;
+    private BufferedMergeSort bufferedMergeSort;
     private QuickSort quickSort;
     private HeapSort heapSort;
+    private ParallelMergeSort parallelMergeSort;
+    private ParallelQuickSort parallelQuickSort;
+    private DualPivotQuickSort dualPivotQuickSort;
+    private IntroSort introSort;
+    private LsdRadixSort lsdRadixSort;
+    private MsdRadixSort msdRadixSort;
+    private MergeSort hybridMergeSort;
+    private IntroSort hybridQuickSort;
+    private NetworkSort bitonicSort;
+    private NetworkSort oddEvenMergeSort;
+    private ThreeWayQuickSort threeWayQuickSort;
+    private AutoSort autoSort;
     
     public SortingVisualizerComplete() {
         initializeComponents();
@@ -534,8 +7732,21 @@ public class SortingVisualizerComplete extends JFrame {
         selectionSort = new SelectionSort();
         insertionSort = new InsertionSort();
         mergeSort = new MergeSort();
+        bufferedMergeSort = new BufferedMergeSort();
         quickSort = new QuickSort();
         heapSort = new HeapSort();
+        parallelMergeSort = new ParallelMergeSort();
+        parallelQuickSort = new ParallelQuickSort();
+        dualPivotQuickSort = new DualPivotQuickSort();
+        introSort = new IntroSort();
+        lsdRadixSort = new LsdRadixSort();
+        msdRadixSort = new MsdRadixSort();
+        hybridMergeSort = new MergeSort(BlockSorter.DEFAULT_BLOCK);
+        hybridQuickSort = new IntroSort(BlockSorter.DEFAULT_BLOCK);
+        bitonicSort = new NetworkSort(SortingNetworks.BITONIC);
+        oddEvenMergeSort = new NetworkSort(SortingNetworks.ODD_EVEN);
+        threeWayQuickSort = new ThreeWayQuickSort();
+        autoSort = new AutoSort();
         
         setTitle("🎯 Sorting Algorithm Visualizer - Complete DSA Project");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -556,7 +7767,13 @@ public class SortingVisualizerComplete extends JFrame {
         // Algorithm selector
         String[] algorithms = {
             "Bubble Sort O(n²)", "Selection Sort O(n²)", "Insertion Sort O(n²)", 
-            "Merge Sort O(n log n)", "Quick Sort O(n log n)", "Heap Sort O(n log n)"
+            "Merge Sort O(n log n)", "Bottom-Up Merge Sort O(n log n)", "Quick Sort O(n log n)", "Heap Sort O(n log n)",
+            "Parallel Merge Sort O(n log n)", "Parallel Quick Sort O(n log n)",
+            "Dual-Pivot Quick Sort O(n log n)", "Intro Sort O(n log n)",
+            "LSD Radix Sort O(n)", "MSD Radix Sort O(n)",
+            "Hybrid Merge Sort O(n log n)", "Hybrid Quick Sort O(n log n)",
+            "Bitonic Sort O(n log² n)", "Odd-Even Merge Sort O(n log² n)",
+            "3-Way Quick Sort O(n log n)", "Auto"
         };
         algorithmSelector = new JComboBox<>(algorithms);
         algorithmSelector.setFont(new Font("Arial", Font.BOLD, 14));
@@ -594,9 +7811,25 @@ public class SortingVisualizerComplete extends JFrame {
         speedSlider.setBackground(new Color(236, 240, 241));
         speedSlider.setForeground(new Color(44, 62, 80));
         speedSlider.setFont(new Font("Arial", Font.PLAIN, 12));
-        speedLabel = new JLabel("⚡ Animation Speed: 50");
+        speedLabel = new JLabel(speedText(50));
         speedLabel.setFont(new Font("Arial", Font.BOLD, 14));
         
+        // Frame rate control
+        distributionSelector = new JComboBox<>(InputDistribution.values());
+        distributionSelector.setFont(new Font("Arial", Font.BOLD, 14));
+        distributionSelector.setBackground(Color.WHITE);
+        distributionSelector.setForeground(new Color(44, 62, 80));
+        
+        overlaySelector = new JComboBox<>(new String[] {"None", "Access Heat", "Cache Misses"});
+        overlaySelector.setFont(new Font("Arial", Font.BOLD, 14));
+        overlaySelector.setBackground(Color.WHITE);
+        overlaySelector.setForeground(new Color(44, 62, 80));
+        
+        frameRateSelector = new JComboBox<>(new String[] {"60 fps", "120 fps"});
+        frameRateSelector.setFont(new Font("Arial", Font.BOLD, 14));
+        frameRateSelector.setBackground(Color.WHITE);
+        frameRateSelector.setForeground(new Color(44, 62, 80));
+        
         // Style the slider
         speedSlider.setUI(new BasicSliderUI(speedSlider) {
             @Override
@@ -610,15 +7843,21 @@ public class SortingVisualizerComplete extends JFrame {
             }
         });
         
-        // Array size control
-        sizeSlider = new JSlider(10, 300, 100);
+        // Array size control, logarithmic: a slider value v selects 10^(v/10) elements
+        sizeSlider = new JSlider(10, 80, 20);
         sizeSlider.setPaintTicks(true);
         sizeSlider.setPaintLabels(true);
-        sizeSlider.setMajorTickSpacing(50);
+        sizeSlider.setMajorTickSpacing(10);
+        java.util.Hashtable<Integer, JLabel> sizeLabels = new java.util.Hashtable<>();
+        String[] sizeNames = {"10", "100", "1K", "10K", "100K", "1M", "10M", "100M"};
+        for (int i = 0; i < sizeNames.length; i++) {
+            sizeLabels.put(10 * (i + 1), new JLabel(sizeNames[i]));
+        }
+        sizeSlider.setLabelTable(sizeLabels);
         sizeSlider.setBackground(new Color(236, 240, 241));
         sizeSlider.setForeground(new Color(44, 62, 80));
         sizeSlider.setFont(new Font("Arial", Font.PLAIN, 12));
-        sizeLabel = new JLabel("📊 Array Size: 100");
+        sizeLabel = new JLabel(sizeText(arraySizeFor(sizeSlider.getValue())));
         sizeLabel.setFont(new Font("Arial", Font.BOLD, 14));
         
         // Style the slider
@@ -638,11 +7877,34 @@ public class SortingVisualizerComplete extends JFrame {
         startButton = new JButton("🚀 Start Sorting");
         resetButton = new JButton("🔄 Reset Array");
         shuffleButton = new JButton("🎲 Shuffle Array");
+        exportButton = new JButton("📤 Export Metrics");
+        raceButton = new JButton("🏁 Race Mode");
+        externalSortButton = new JButton("🗄️ External Sort");
+        
+        // Timeline controls, live while a run is played back
+        stepBackButton = new JButton("⏮️ Step Back");
+        pauseButton = new JButton("⏸️ Pause");
+        stepButton = new JButton("⏭️ Step");
+        timelineSlider = new JSlider(0, 1000, 0);
+        timelineSlider.setBackground(new Color(236, 240, 241));
+        timelineLabel = new JLabel(timelineText(0, 0));
+        timelineLabel.setFont(new Font("Arial", Font.BOLD, 14));
+        saveTraceButton = new JButton("💾 Save Trace");
+        playTraceButton = new JButton("📂 Play Trace");
         
         // Style buttons
         styleButton(startButton, new Color(39, 174, 96));
         styleButton(resetButton, new Color(231, 76, 60));
         styleButton(shuffleButton, new Color(52, 152, 219));
+        styleButton(exportButton, new Color(142, 68, 173));
+        styleButton(raceButton, new Color(230, 126, 34));
+        styleButton(externalSortButton, new Color(52, 73, 94));
+        for (JButton button : new JButton[] {stepBackButton, pauseButton, stepButton, saveTraceButton,
+                playTraceButton}) {
+            styleButton(button, new Color(52, 73, 94));
+            button.setPreferredSize(new Dimension(140, 36));
+        }
+        setTimelineEnabled(false);
         
         // Status and info labels
         statusLabel = new JLabel("🎯 Ready to sort! Select algorithm and click Start.");
@@ -652,6 +7914,10 @@ public class SortingVisualizerComplete extends JFrame {
         complexityLabel = new JLabel("Time: O(n²) | Space: O(1) | Stable: Yes");
         complexityLabel.setFont(new Font("Arial", Font.ITALIC, 14));
         complexityLabel.setForeground(new Color(127, 140, 141));
+        
+        metricsLabel = new JLabel(" ");
+        metricsLabel.setFont(new Font("Arial", Font.PLAIN, 14));
+        metricsLabel.setForeground(new Color(44, 62, 80));
     }
     
     private void styleButton(JButton button, Color color) {
@@ -727,25 +7993,73 @@ public class SortingVisualizerComplete extends JFrame {
         sizeSlider.setPreferredSize(new Dimension(200, 40));
         controlPanel.add(sizeSlider, gbc);
         
+        // Input distribution panel
+        JLabel distributionLabel = new JLabel("📐 Input:");
+        distributionLabel.setFont(new Font("Arial", Font.BOLD, 14));
+        gbc.gridx = 6; gbc.gridy = 0; gbc.gridwidth = 1;
+        controlPanel.add(distributionLabel, gbc);
+        gbc.gridy = 1;
+        distributionSelector.setPreferredSize(new Dimension(150, 40));
+        controlPanel.add(distributionSelector, gbc);
+        
+        // Frame rate control panel
+        JLabel frameRateLabel = new JLabel("🎞️ Frame Rate:");
+        frameRateLabel.setFont(new Font("Arial", Font.BOLD, 14));
+        gbc.gridx = 7; gbc.gridy = 0; gbc.gridwidth = 1;
+        controlPanel.add(frameRateLabel, gbc);
+        gbc.gridy = 1;
+        frameRateSelector.setPreferredSize(new Dimension(110, 40));
+        controlPanel.add(frameRateSelector, gbc);
+        
+        // Overlay control panel
+        JLabel overlayLabel = new JLabel("🔥 Overlay:");
+        overlayLabel.setFont(new Font("Arial", Font.BOLD, 14));
+        gbc.gridx = 8; gbc.gridy = 0; gbc.gridwidth = 1;
+        controlPanel.add(overlayLabel, gbc);
+        gbc.gridy = 1;
+        overlaySelector.setPreferredSize(new Dimension(140, 40));
+        controlPanel.add(overlaySelector, gbc);
+        
         // Buttons panel
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 20, 0));
         buttonPanel.setBackground(controlPanel.getBackground());
         buttonPanel.add(startButton);
         buttonPanel.add(resetButton);
         buttonPanel.add(shuffleButton);
+        buttonPanel.add(exportButton);
+        buttonPanel.add(raceButton);
+        buttonPanel.add(externalSortButton);
         
-        gbc.gridx = 0; gbc.gridy = 2; gbc.gridwidth = 6;
+        gbc.gridx = 0; gbc.gridy = 2; gbc.gridwidth = 9;
         controlPanel.add(buttonPanel, gbc);
         
+        // Timeline panel
+        JPanel timelinePanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 12, 0));
+        timelinePanel.setBackground(controlPanel.getBackground());
+        timelinePanel.add(stepBackButton);
+        timelinePanel.add(pauseButton);
+        timelinePanel.add(stepButton);
+        timelineSlider.setPreferredSize(new Dimension(420, 36));
+        timelinePanel.add(timelineSlider);
+        timelinePanel.add(timelineLabel);
+        timelinePanel.add(saveTraceButton);
+        timelinePanel.add(playTraceButton);
+        
+        gbc.gridy = 3;
+        controlPanel.add(timelinePanel, gbc);
+        
         // Info panel
-        JPanel infoPanel = new JPanel(new FlowLayout());
+        JPanel infoPanel = new JPanel(new GridLayout(0, 1, 0, 4));
         infoPanel.setBackground(new Color(249, 249, 249));
         infoPanel.setBorder(BorderFactory.createTitledBorder(
             BorderFactory.createLineBorder(new Color(189, 195, 199), 2),
             "📊 Algorithm Information",
             0, 0, new Font("Arial", Font.BOLD, 14), new Color(44, 62, 80)
         ));
+        complexityLabel.setHorizontalAlignment(SwingConstants.CENTER);
+        metricsLabel.setHorizontalAlignment(SwingConstants.CENTER);
         infoPanel.add(complexityLabel);
+        infoPanel.add(metricsLabel);
         
         // Combined control panel
         JPanel topPanel = new JPanel(new BorderLayout());
@@ -773,20 +8087,41 @@ public class SortingVisualizerComplete extends JFrame {
         // Speed slider
         speedSlider.addChangeListener(e -> {
             int speed = speedSlider.getValue();
-            speedLabel.setText("⚡ Animation Speed: " + speed);
-            visualizationPanel.setDelay(101 - speed);
+            speedLabel.setText(speedText(speed));
+            visualizationPanel.setStepsPerSecond(stepsPerSecond(speed));
         });
+        visualizationPanel.setStepsPerSecond(stepsPerSecond(speedSlider.getValue()));
+        
+        // Frame rate
+        frameRateSelector.addActionListener(e ->
+            visualizationPanel.setFramesPerSecond(frameRateSelector.getSelectedIndex() == 1 ? 120 : 60));
         
         // Size slider
         sizeSlider.addChangeListener(e -> {
-            int size = sizeSlider.getValue();
-            sizeLabel.setText("📊 Array Size: " + size);
-            if (!visualizationPanel.isSorting()) {
+            int size = arraySizeFor(sizeSlider.getValue());
+            sizeLabel.setText(sizeText(size));
+            if (!sizeSlider.getValueIsAdjusting() && !visualizationPanel.isSorting()) {
                 visualizationPanel.setArraySize(size);
                 shuffleArray();
             }
         });
         
+        // Overlay; reads are only recorded, and the cache only simulated, for runs started with it on
+        overlaySelector.addActionListener(e -> {
+            int overlay = overlaySelector.getSelectedIndex();
+            visualizationPanel.setHeatmap(overlay == 1);
+            visualizationPanel.setCacheModel(overlay == 2 ? CacheSimulator.defaults() : null);
+        });
+        
+        // Input distribution
+        distributionSelector.addActionListener(e -> {
+            visualizationPanel.setDistribution((InputDistribution) distributionSelector.getSelectedItem());
+            if (!visualizationPanel.isSorting()) {
+                shuffleArray();
+                statusLabel.setText(inputText("📐 New input"));
+            }
+        });
+        
         // Start button
         startButton.addActionListener(e -> startSorting());
         
@@ -796,18 +8131,66 @@ public class SortingVisualizerComplete extends JFrame {
             shuffleArray();
             startButton.setText("🚀 Start Sorting");
             startButton.setEnabled(true);
-            statusLabel.setText("🔄 Array reset and shuffled!");
+            statusLabel.setText(inputText("🔄 Array reset"));
+        });
+        
+        // Timeline
+        pauseButton.addActionListener(e -> {
+            boolean pause = !visualizationPanel.isPlaybackPaused();
+            visualizationPanel.setPlaybackPaused(pause);
+            pauseButton.setText(pause ? "▶️ Resume" : "⏸️ Pause");
+        });
+        stepButton.addActionListener(e -> visualizationPanel.stepPlayback(1));
+        stepBackButton.addActionListener(e -> visualizationPanel.stepPlayback(-1));
+        timelineSlider.addChangeListener(e -> {
+            if (!updatingTimeline && visualizationPanel.getPlayer() != null) {
+                visualizationPanel.seekPlayback(timelineSlider.getValue() / (double) timelineSlider.getMaximum());
+            }
         });
         
+        saveTraceButton.addActionListener(e -> saveTrace());
+        playTraceButton.addActionListener(e -> playTrace());
+        
+        // Race mode
+        raceButton.addActionListener(e -> openRace());
+        externalSortButton.addActionListener(e -> new ExternalSortWindow().setVisible(true));
+        
+        // Export button
+        exportButton.addActionListener(e -> exportMetrics());
+        
         // Shuffle button
         shuffleButton.addActionListener(e -> {
             if (!visualizationPanel.isSorting()) {
                 shuffleArray();
-                statusLabel.setText("🎲 Array shuffled randomly!");
+                statusLabel.setText(inputText("🎲 Array shuffled"));
             }
         });
     }
     
+    /** Maps the 1-100 speed slider exponentially onto 1 to 10 million steps per second. */
+    private static double stepsPerSecond(int speed) {
+        double fraction = (speed - 1) / 99.0;
+        return FrameScheduler.MIN_STEPS_PER_SECOND
+            * Math.pow(FrameScheduler.MAX_STEPS_PER_SECOND / FrameScheduler.MIN_STEPS_PER_SECOND, fraction);
+    }
+    
+    private static int arraySizeFor(int sliderValue) {
+        return (int) Math.round(Math.pow(10, sliderValue / 10.0));
+    }
+    
+    private static String sizeText(int size) {
+        return String.format("📊 Array Size: %,d", size);
+    }
+    
+    private String inputText(String prefix) {
+        return String.format("%s: %s, seed %d", prefix, visualizationPanel.getDistribution(),
+            visualizationPanel.getSeed());
+    }
+    
+    private static String speedText(int speed) {
+        return String.format("⚡ Animation Speed: %d (%,d steps/s)", speed, Math.round(stepsPerSecond(speed)));
+    }
+    
     private void startSorting() {
         String selectedAlgorithm = (String) algorithmSelector.getSelectedItem();
         if (selectedAlgorithm == null) return;
@@ -817,6 +8200,7 @@ public class SortingVisualizerComplete extends JFrame {
         startButton.setText("⏸️ Sorting...");
         startButton.setEnabled(false);
         statusLabel.setText("🚀 Sorting with " + algorithmName + "... Watch the magic happen!");
+        statusLabel.setToolTipText(null);
         
         SortingAlgorithm algorithm;
         switch (algorithmName) {
@@ -832,21 +8216,224 @@ public class SortingVisualizerComplete extends JFrame {
             case "Merge Sort":
                 algorithm = mergeSort;
                 break;
+            case "Bottom-Up Merge Sort":
+                algorithm = bufferedMergeSort;
+                break;
             case "Quick Sort":
                 algorithm = quickSort;
                 break;
             case "Heap Sort":
                 algorithm = heapSort;
                 break;
+            case "Parallel Merge Sort":
+                algorithm = parallelMergeSort;
+                break;
+            case "Parallel Quick Sort":
+                algorithm = parallelQuickSort;
+                break;
+            case "Dual-Pivot Quick Sort":
+                algorithm = dualPivotQuickSort;
+                break;
+            case "Intro Sort":
+                algorithm = introSort;
+                break;
+            case "LSD Radix Sort":
+                algorithm = lsdRadixSort;
+                break;
+            case "MSD Radix Sort":
+                algorithm = msdRadixSort;
+                break;
+            case "Hybrid Merge Sort":
+                algorithm = hybridMergeSort;
+                break;
+            case "Hybrid Quick Sort":
+                algorithm = hybridQuickSort;
+                break;
+            case "Bitonic Sort":
+                algorithm = bitonicSort;
+                break;
+            case "Odd-Even Merge Sort":
+                algorithm = oddEvenMergeSort;
+                break;
+            case "3-Way Quick Sort":
+                algorithm = threeWayQuickSort;
+                break;
+            case "Auto":
+                algorithm = autoSort;
+                break;
             default:
                 algorithm = bubbleSort;
         }
         
-        visualizationPanel.startSorting(algorithm, () -> {
+        int[] autoInput = algorithm == autoSort ? visualizationPanel.getArray().clone() : null;
+        SortMetrics metrics = new SortMetrics(algorithmName, visualizationPanel.getArray().length);
+        showRun(metrics);
+        visualizationPanel.startSorting(algorithm, metrics, () -> {
+            runTimer.stop();
+            metricsLabel.setText(metrics.summary());
+            metricsLabel.setToolTipText(metrics.cache() == null ? null : metrics.cache().summary());
+            setTimelineEnabled(false);
+            if (metrics.elapsedNanos() >= 0) {
+                completedRuns.add(metrics);
+            }
             startButton.setText("🚀 Start Sorting");
             startButton.setEnabled(true);
             statusLabel.setText("✅ Sorting completed successfully! Array is now sorted.");
+            if (autoInput != null && metrics.elapsedNanos() >= 0) {
+                showAutoDecision(autoInput);
+            }
+        });
+    }
+    
+    /** Names the engine Auto picked, then times it against the default engine headless on a copy of the input. */
+    private void showAutoDecision(int[] input) {
+        AutoSort.Decision decision = autoSort.lastDecision();
+        if (decision == null) return;
+        String pending = String.format("✅ Auto sorted with %s (%s). Timing it against %s...", decision.engine,
+            decision.reason(), AutoSort.DEFAULT_ENGINE);
+        statusLabel.setText(pending);
+        statusLabel.setToolTipText(decision.profile.summary());
+        new SwingWorker<AutoSort.Decision, Void>() {
+            @Override
+            protected AutoSort.Decision doInBackground() {
+                return AutoSort.measure(input, input.length <= 1_000_000 ? 3 : 1);
+            }
+            
+            @Override
+            protected void done() {
+                if (!statusLabel.getText().equals(pending)) return;
+                try {
+                    statusLabel.setText("✅ Auto chose " + get().summary());
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    statusLabel.setText("⚠️ Timing Auto failed: " + cause);
+                }
+            }
+        }.execute();
+    }
+    
+    /** Polls the running sort's counters and playback position onto the labels until the run completes. */
+    private void showRun(SortMetrics metrics) {
+        for (ActionListener listener : runTimer.getActionListeners()) {
+            runTimer.removeActionListener(listener);
+        }
+        runTimer.addActionListener(e -> {
+            metricsLabel.setText(metrics.summary());
+            updateTimeline();
         });
+        metricsLabel.setText(metrics.summary());
+        setTimelineEnabled(true);
+        runTimer.restart();
+    }
+    
+    private void updateTimeline() {
+        SortEventPlayer player = visualizationPanel.getPlayer();
+        if (player == null || timelineSlider.getValueIsAdjusting()) return;
+        updatingTimeline = true;
+        timelineSlider.setValue((int) Math.round(player.progress() * timelineSlider.getMaximum()));
+        updatingTimeline = false;
+        timelineLabel.setText(timelineText(player.position(), player.total()));
+    }
+    
+    private void setTimelineEnabled(boolean enabled) {
+        stepBackButton.setEnabled(enabled);
+        pauseButton.setEnabled(enabled);
+        stepButton.setEnabled(enabled);
+        timelineSlider.setEnabled(enabled);
+        pauseButton.setText("⏸️ Pause");
+    }
+    
+    private static String timelineText(long position, long total) {
+        return String.format("⏱️ Step %,d / %,d", position, total);
+    }
+    
+    private void openRace() {
+        String[] names = new String[algorithmSelector.getItemCount()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = algorithmSelector.getItemAt(i).split(" O\\(")[0];
+        }
+        int framesPerSecond = frameRateSelector.getSelectedIndex() == 1 ? 120 : 60;
+        new RaceWindow(visualizationPanel.getArray().clone(), names, stepsPerSecond(speedSlider.getValue()),
+            framesPerSecond).setVisible(true);
+    }
+    
+    /** Sorts a copy of the array with the selected algorithm at full speed, streaming every event to a file. */
+    private void saveTrace() {
+        String selectedAlgorithm = (String) algorithmSelector.getSelectedItem();
+        if (selectedAlgorithm == null || visualizationPanel.isSorting()) return;
+        String algorithmName = selectedAlgorithm.split(" O\\(")[0];
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new java.io.File("sort.svtrace"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        Path file = chooser.getSelectedFile().toPath();
+        int[] input = visualizationPanel.getArray().clone();
+        saveTraceButton.setEnabled(false);
+        statusLabel.setText("💾 Tracing " + algorithmName + " to " + file.getFileName() + "...");
+        new SwingWorker<String, Void>() {
+            @Override
+            protected String doInBackground() throws IOException {
+                SortTraceWriter writer = new SortTraceWriter(file, input);
+                writer.recordReads(visualizationPanel.isHeatmap());
+                long nanos = writer.record(createEngine(algorithmName));
+                return String.format("💾 Traced %,d events (%,d KB) in %.1f ms to %s", writer.events(),
+                    writer.bytes() / 1024, nanos / 1e6, file.getFileName());
+            }
+            
+            @Override
+            protected void done() {
+                saveTraceButton.setEnabled(true);
+                try {
+                    statusLabel.setText(get());
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    statusLabel.setText("⚠️ Trace failed: " + cause.getMessage());
+                }
+            }
+        }.execute();
+    }
+    
+    /** Replays a trace file into the panel straight from the mapped file; seeking is not available. */
+    private void playTrace() {
+        if (visualizationPanel.isSorting()) return;
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        SortTraceReader trace;
+        try {
+            trace = new SortTraceReader(chooser.getSelectedFile().toPath());
+        } catch (IOException ex) {
+            statusLabel.setText("⚠️ Cannot open trace: " + ex.getMessage());
+            return;
+        }
+        String name = chooser.getSelectedFile().getName();
+        sizeLabel.setText(sizeText(trace.initialArray().length));
+        startButton.setEnabled(false);
+        playTraceButton.setEnabled(false);
+        statusLabel.setText(String.format("📂 Playing %,d events from %s...", trace.events(), name));
+        visualizationPanel.playTrace(trace, ex -> statusLabel.setText("⚠️ Trace playback failed: " + ex.getMessage()),
+            () -> {
+                startButton.setEnabled(true);
+                playTraceButton.setEnabled(true);
+                if (!statusLabel.getText().startsWith("⚠️")) {
+                    statusLabel.setText(String.format("✅ Played %,d of %,d events from %s", trace.played(),
+                        trace.events(), name));
+                }
+            });
+    }
+    
+    private void exportMetrics() {
+        if (completedRuns.isEmpty()) {
+            statusLabel.setText("📤 No completed runs to export yet.");
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new java.io.File("sort-metrics.csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        try {
+            SortMetrics.writeCsv(completedRuns, chooser.getSelectedFile().toPath());
+            statusLabel.setText("📤 Exported " + completedRuns.size() + " runs to " + chooser.getSelectedFile().getName());
+        } catch (IOException ex) {
+            statusLabel.setText("⚠️ Export failed: " + ex.getMessage());
+        }
     }
     
     private void shuffleArray() {
@@ -873,12 +8460,51 @@ public class SortingVisualizerComplete extends JFrame {
             case "Merge Sort":
                 complexity = "⏱️ Time: O(n log n) | 💾 Space: O(n) | 🔄 Stable: Yes | 📈 Best for: Large datasets";
                 break;
+            case "Bottom-Up Merge Sort":
+                complexity = "⏱️ Time: O(n log n) | 💾 Space: O(n), one buffer | 🔄 Stable: Yes | 📈 Best for: Large datasets without allocation churn";
+                break;
             case "Quick Sort":
                 complexity = "⏱️ Time: O(n log n) avg | 💾 Space: O(log n) | 🔄 Stable: No | 📈 Best for: General purpose";
                 break;
             case "Heap Sort":
                 complexity = "⏱️ Time: O(n log n) | 💾 Space: O(1) | 🔄 Stable: No | 📈 Best for: Guaranteed performance";
                 break;
+            case "Parallel Merge Sort":
+                complexity = "⏱️ Time: O(n log n / p) | 💾 Space: O(n) | 🔄 Stable: Yes | 📈 Best for: Large datasets on many cores";
+                break;
+            case "Parallel Quick Sort":
+                complexity = "⏱️ Time: O(n log n / p) avg | 💾 Space: O(log n) | 🔄 Stable: No | 📈 Best for: In-place sorting on many cores";
+                break;
+            case "Dual-Pivot Quick Sort":
+                complexity = "⏱️ Time: O(n log n) avg | 💾 Space: O(log n) | 🔄 Stable: No | 📈 Best for: Fast general-purpose sorting";
+                break;
+            case "Intro Sort":
+                complexity = "⏱️ Time: O(n log n) worst | 💾 Space: O(log n) | 🔄 Stable: No | 📈 Best for: Quicksort speed with a guaranteed bound";
+                break;
+            case "LSD Radix Sort":
+                complexity = "⏱️ Time: O(4n) | 💾 Space: O(n) | 🔄 Stable: Yes | 📈 Best for: Large integer arrays";
+                break;
+            case "MSD Radix Sort":
+                complexity = "⏱️ Time: O(4n) | 💾 Space: O(1) | 🔄 Stable: No | 📈 Best for: Large integer arrays in place";
+                break;
+            case "Hybrid Merge Sort":
+                complexity = "⏱️ Time: O(n log n) | 💾 Space: O(n) | 🔄 Stable: No | 📈 Best for: Merge sort with SIMD-sized base cases";
+                break;
+            case "Hybrid Quick Sort":
+                complexity = "⏱️ Time: O(n log n) | 💾 Space: O(log n) | 🔄 Stable: No | 📈 Best for: Introsort with SIMD-sized base cases";
+                break;
+            case "Bitonic Sort":
+                complexity = "⏱️ Time: O(n log² n / p) | 💾 Space: O(1) | 🔄 Stable: No | 📈 Best for: Data-independent, predictable latency";
+                break;
+            case "Odd-Even Merge Sort":
+                complexity = "⏱️ Time: O(n log² n / p) | 💾 Space: O(1) | 🔄 Stable: No | 📈 Best for: Fewest comparators of the simple networks";
+                break;
+            case "3-Way Quick Sort":
+                complexity = "⏱️ Time: O(n log k), k distinct keys | 💾 Space: O(log n) | 🔄 Stable: No | 📈 Best for: Many duplicate keys";
+                break;
+            case "Auto":
+                complexity = "⏱️ Time: that of the chosen engine | 💾 Space: O(1) to sample | 🔄 Stable: Depends | 📈 Best for: Unknown input shapes";
+                break;
         }
         
         complexityLabel.setText(complexity);
@@ -889,6 +8515,54 @@ public class SortingVisualizerComplete extends JFrame {
     // ================================================================================================
     
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--bench")) {
+            try {
+                BenchSweep.main(args);
+            } catch (Exception e) {
+                System.err.println("Benchmark failed: " + e);
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--trace")) {
+            if (args.length != 4) {
+                System.err.println("usage: --trace <engine> <size> <file>");
+                System.exit(2);
+            }
+            int[] input = new SplittableRandom(42).ints(Integer.parseInt(args[2])).toArray();
+            try {
+                SortTraceWriter writer = new SortTraceWriter(Paths.get(args[3]), input);
+                long nanos = writer.record(SortEngines.create(args[1]));
+                System.out.printf("%,d events, %,d bytes (%.2f bytes/event) in %.1f ms%n", writer.events(),
+                    writer.bytes(), (double) writer.bytes() / Math.max(1, writer.events()), nanos / 1e6);
+            } catch (IOException e) {
+                System.err.println("Trace failed: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--external")) {
+            try {
+                ExternalMergeSort.main(args);
+            } catch (IOException e) {
+                System.err.println("External sort failed: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--large")) {
+            LargeSorts.main(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--auto")) {
+            AutoSort.report(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000, System.out);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--speedup")) {
+            SpeedupReport.run(args.length > 1 ? Integer.parseInt(args[1]) : 100_000_000, System.out);
+            return;
+        }
+        
         // Simple look and feel setup that works on all Java versions
         try {
             // Just use the default Swing look and feel - no special methods needed
@@ -907,8 +8581,19 @@ public class SortingVisualizerComplete extends JFrame {
                 System.out.println("   🎯 Selection Sort - O(n²) time, O(1) space");
                 System.out.println("   📝 Insertion Sort - O(n²) time, O(1) space");
                 System.out.println("   🔀 Merge Sort - O(n log n) time, O(n) space");
+                System.out.println("   🔀 Bottom-Up Merge Sort - O(n log n) time, one O(n) buffer");
                 System.out.println("   ⚡ Quick Sort - O(n log n) average time, O(log n) space");
                 System.out.println("   🌲 Heap Sort - O(n log n) time, O(1) space");
+                System.out.println("   🧵 Parallel Merge Sort - O(n log n / p) time, O(n) space");
+                System.out.println("   🧵 Parallel Quick Sort - O(n log n / p) average time, O(log n) space");
+                System.out.println("   ⚡ Dual-Pivot Quick Sort - O(n log n) average time, O(log n) space");
+                System.out.println("   🛡️ Intro Sort - O(n log n) worst-case time, O(log n) space");
+                System.out.println("   🔢 LSD Radix Sort - O(n) time for 32-bit keys, O(n) space");
+                System.out.println("   🔢 MSD Radix Sort - O(n) time for 32-bit keys, in place");
+                System.out.println("   🧩 Hybrid Merge/Quick Sort - sorting-network base case (" + BlockSorter.create().kind() + ")");
+                System.out.println("   🕸️ Bitonic / Odd-Even Merge Sort - O(n log² n) comparators, one fork/join pass per stage");
+                System.out.println("   ⚡ 3-Way Quick Sort - O(n log k) time for k distinct keys, O(log n) space");
+                System.out.println("   🤖 Auto - samples the input and runs the engine a cost model prices cheapest");
                 System.out.println("🚀 Application ready!");
                 
                 try {
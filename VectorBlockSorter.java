@@ -0,0 +1,141 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link SortingVisualizerComplete.BlockSorter} that runs the bitonic network on {@link IntVector}
+ * lanes of the platform's preferred width. A block is copied into a scratch array padded with
+ * {@code Integer.MAX_VALUE} to a power of two of at least one vector. Comparators further apart
+ * than a vector become lane-wise min/max of two vectors, and those within one vector become a
+ * min/max against a permuted copy, blended by a lane mask, so no stage branches on the keys.
+ * The Vector API is still incubating, so this class lives outside SortingVisualizerComplete.java
+ * and is loaded reflectively when compiled and run with the module:
+ *
+ * <pre>
+ * javac --add-modules jdk.incubator.vector -cp . VectorBlockSorter.java
+ * java --add-modules jdk.incubator.vector SortingVisualizerComplete
+ * </pre>
+ *
+ * Instances keep a scratch array, so each thread needs its own.
+ */
+public final class VectorBlockSorter implements SortingVisualizerComplete.BlockSorter {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    private static final int LOG_LANES = Integer.numberOfTrailingZeros(LANES);
+
+    // Indexed by log2 of the comparator distance j < LANES: partner lane l ^ j, and the lanes that keep the max.
+    private static final VectorShuffle<Integer>[] PAIRS = shuffles(false);
+    private static final VectorMask<Integer>[] PAIR_MAX = masks(false);
+    // Indexed by log2 of the merge size k <= LANES: partner lane l ^ (k - 1), and the lanes that keep the max.
+    private static final VectorShuffle<Integer>[] MIRRORS = shuffles(true);
+    private static final VectorMask<Integer>[] MIRROR_MAX = masks(true);
+    private static final VectorShuffle<Integer> REVERSE = VectorShuffle.fromOp(SPECIES, i -> LANES - 1 - i);
+
+    private final int[] scratch = new int[Math.max(MAX_BLOCK, LANES)];
+
+    public VectorBlockSorter() {
+        if (LANES < 4) {
+            throw new UnsupportedOperationException("Only " + LANES + " int lanes");
+        }
+    }
+
+    @Override
+    public void sort(int[] array, int from, int length) {
+        if (length < 2) {
+            return;
+        }
+        int size = Math.max(LANES, Integer.highestOneBit(length - 1) << 1);
+        int[] keys = scratch;
+        System.arraycopy(array, from, keys, 0, length);
+        for (int i = length; i < size; i++) {
+            keys[i] = Integer.MAX_VALUE;
+        }
+        for (int k = 2; k <= size; k <<= 1) {
+            mirror(keys, size, k);
+            for (int j = k >> 2; j > 0; j >>= 1) {
+                pair(keys, size, j);
+            }
+        }
+        System.arraycopy(keys, 0, array, from, length);
+    }
+
+    @Override
+    public String kind() {
+        return "vector (" + LANES + " lanes)";
+    }
+
+    // First stage of a merge of size k: position i against k - 1 - i within each group of k.
+    private static void mirror(int[] keys, int size, int k) {
+        if (k <= LANES) {
+            VectorShuffle<Integer> shuffle = MIRRORS[Integer.numberOfTrailingZeros(k)];
+            VectorMask<Integer> takeMax = MIRROR_MAX[Integer.numberOfTrailingZeros(k)];
+            for (int i = 0; i < size; i += LANES) {
+                IntVector v = IntVector.fromArray(SPECIES, keys, i);
+                IntVector partner = v.rearrange(shuffle);
+                v.min(partner).blend(v.max(partner), takeMax).intoArray(keys, i);
+            }
+            return;
+        }
+        for (int group = 0; group < size; group += k) {
+            for (int i = group, m = group + k - LANES; i < m; i += LANES, m -= LANES) {
+                IntVector low = IntVector.fromArray(SPECIES, keys, i);
+                IntVector high = IntVector.fromArray(SPECIES, keys, m).rearrange(REVERSE);
+                low.min(high).intoArray(keys, i);
+                low.max(high).rearrange(REVERSE).intoArray(keys, m);
+            }
+        }
+    }
+
+    // Later stages: position i against i + j for every i with bit j clear.
+    private static void pair(int[] keys, int size, int j) {
+        if (j < LANES) {
+            VectorShuffle<Integer> shuffle = PAIRS[Integer.numberOfTrailingZeros(j)];
+            VectorMask<Integer> takeMax = PAIR_MAX[Integer.numberOfTrailingZeros(j)];
+            for (int i = 0; i < size; i += LANES) {
+                IntVector v = IntVector.fromArray(SPECIES, keys, i);
+                IntVector partner = v.rearrange(shuffle);
+                v.min(partner).blend(v.max(partner), takeMax).intoArray(keys, i);
+            }
+            return;
+        }
+        for (int i = 0; i < size; i += LANES) {
+            if ((i & j) == 0) {
+                IntVector low = IntVector.fromArray(SPECIES, keys, i);
+                IntVector high = IntVector.fromArray(SPECIES, keys, i + j);
+                low.min(high).intoArray(keys, i);
+                low.max(high).intoArray(keys, i + j);
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static VectorShuffle<Integer>[] shuffles(boolean mirror) {
+        VectorShuffle<Integer>[] shuffles = new VectorShuffle[LOG_LANES + 1];
+        for (int log = mirror ? 1 : 0; log < shuffles.length; log++) {
+            int distance = 1 << log;
+            if (mirror || distance < LANES) {
+                int xor = mirror ? distance - 1 : distance;
+                shuffles[log] = VectorShuffle.fromOp(SPECIES, i -> i ^ xor);
+            }
+        }
+        return shuffles;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static VectorMask<Integer>[] masks(boolean mirror) {
+        VectorMask<Integer>[] masks = new VectorMask[LOG_LANES + 1];
+        for (int log = mirror ? 1 : 0; log < masks.length; log++) {
+            int distance = 1 << log;
+            if (mirror || distance < LANES) {
+                int bit = mirror ? distance >> 1 : distance;
+                boolean[] takeMax = new boolean[LANES];
+                for (int lane = 0; lane < LANES; lane++) {
+                    takeMax[lane] = (lane & bit) != 0;
+                }
+                masks[log] = VectorMask.fromArray(SPECIES, takeMax, 0);
+            }
+        }
+        return masks;
+    }
+}
@@ -0,0 +1,68 @@
+package sortbench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Base-case kernels on single blocks: {@code InsertionSort} against the bitonic network, scalar
+ * and on Vector API lanes. "vector-network" falls back to the scalar network unless the forks run
+ * with {@code -jvmArgsAppend --add-modules=jdk.incubator.vector} and VectorBlockSorter is on the
+ * class path; setup prints which one it got. Scores are per block.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(BlockSortBenchmark.BLOCKS)
+public class BlockSortBenchmark {
+    static final int BLOCKS = 1024;
+
+    @Param({"insertion", "scalar-network", "vector-network"})
+    public String kernel;
+
+    @Param({"8", "16", "32", "64"})
+    public int blockSize;
+
+    private Consumer<int[]> sorter;
+    private int[][] source;
+    private int[][] work;
+
+    @Setup
+    public void setUp() {
+        sorter = Engines.blockSorter(kernel);
+        if (kernel.equals("vector-network")) {
+            System.out.println("vector-network kernel: " + Engines.blockSorterKind());
+        }
+        SplittableRandom random = new SplittableRandom(blockSize);
+        source = new int[BLOCKS][];
+        work = new int[BLOCKS][blockSize];
+        for (int b = 0; b < BLOCKS; b++) {
+            source[b] = random.ints(blockSize).toArray();
+        }
+    }
+
+    @Benchmark
+    public int[][] sort() {
+        for (int b = 0; b < BLOCKS; b++) {
+            System.arraycopy(source[b], 0, work[b], 0, blockSize);
+            sorter.accept(work[b]);
+        }
+        return work;
+    }
+}
@@ -0,0 +1,47 @@
+package sortbench;
+
+import java.lang.reflect.Method;
+
+/**
+ * Input shapes the benchmarks sort, generated by the visualizer's own seeded generators so the
+ * JMH runs, the headless sweep and the UI see the same data. The lookup is reflective for the
+ * same reason as in {@link Engines}.
+ */
+public enum Distribution {
+    RANDOM("random"),
+    SORTED("sorted"),
+    REVERSED("reversed"),
+    NEARLY_SORTED("nearly-sorted"),
+    FEW_UNIQUE("few-unique"),
+    SAWTOOTH("sawtooth"),
+    ORGAN_PIPE("organ-pipe"),
+    ZIPF("zipf"),
+    GAUSSIAN("gaussian");
+
+    private static final String ENGINES_CLASS = "SortingVisualizerComplete$SortEngines";
+
+    private final String key;
+
+    Distribution(String key) {
+        this.key = key;
+    }
+
+    int[] generate(int size) {
+        try {
+            Method method = Class.forName(ENGINES_CLASS).getMethod("input", String.class, int.class);
+            return (int[]) method.invoke(null, key, size);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot generate " + key + " input", e);
+        }
+    }
+
+    /** The same input as an array of the named key type: int, long, double or float. */
+    Object generate(int size, String keys) {
+        try {
+            Method method = Class.forName(ENGINES_CLASS).getMethod("input", String.class, int.class, String.class);
+            return method.invoke(null, key, size, keys);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot generate " + key + " input as " + keys, e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package sortbench;
+
+import java.lang.reflect.Method;
+import java.util.function.Consumer;
+
+/**
+ * Looks up the visualizer's headless sorters. The visualizer is compiled in the default package,
+ * which named packages cannot import, so the lookup goes through reflection once per trial and the
+ * returned {@link Consumer} is called directly inside the measured code.
+ */
+final class Engines {
+    private static final String ENGINES_CLASS = "SortingVisualizerComplete$SortEngines";
+
+    private Engines() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static Consumer<int[]> sorter(String name) {
+        try {
+            Method method = Class.forName(ENGINES_CLASS).getMethod("sorter", String.class);
+            return (Consumer<int[]>) method.invoke(null, name);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot load sorting engine " + name, e);
+        }
+    }
+
+    /** As {@link #sorter(String)}, for arrays of the named key type: int, long, double or float. */
+    @SuppressWarnings("unchecked")
+    static Consumer<Object> sorter(String name, String keys) {
+        try {
+            Method method = Class.forName(ENGINES_CLASS).getMethod("sorter", String.class, String.class);
+            return (Consumer<Object>) method.invoke(null, name, keys);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot load sorting engine " + name + " for " + keys + " keys", e);
+        }
+    }
+
+    /** An {@code InsertionSort} or sorting-network kernel for single blocks of at most 64 ints. */
+    @SuppressWarnings("unchecked")
+    static Consumer<int[]> blockSorter(String kernel) {
+        try {
+            Method method = Class.forName(ENGINES_CLASS).getMethod("blockSorter", String.class);
+            return (Consumer<int[]>) method.invoke(null, kernel);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot load block sorter " + kernel, e);
+        }
+    }
+
+    static String blockSorterKind() {
+        try {
+            return (String) Class.forName(ENGINES_CLASS).getMethod("blockSorterKind").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot load block sorter", e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package sortbench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** O(n log n) and radix engines, measured from 10 up to 10^7 elements. */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NLogNSortBenchmark {
+    @Param({"merge", "merge-buffered", "quick", "heap", "parallel-merge", "parallel-quick", "dual-pivot-quick", "intro",
+            "radix-lsd", "radix-msd", "hybrid-merge", "hybrid-quick", "parallel-bitonic", "parallel-odd-even",
+            "quick-3way", "auto"})
+    public String algorithm;
+
+    @Param({"10", "100", "1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"RANDOM", "SORTED", "REVERSED", "NEARLY_SORTED", "FEW_UNIQUE"})
+    public Distribution distribution;
+
+    private Consumer<int[]> sorter;
+    private int[] source;
+    private int[] work;
+
+    @Setup
+    public void setUp() {
+        sorter = Engines.sorter(algorithm);
+        source = distribution.generate(size);
+        work = new int[size];
+    }
+
+    @Benchmark
+    public int[] sort() {
+        System.arraycopy(source, 0, work, 0, size);
+        sorter.accept(work);
+        return work;
+    }
+}
@@ -0,0 +1,77 @@
+package sortbench;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The O(n log n) and radix engines that have a 64-bit form, on int, long, double and float keys,
+ * against {@link Arrays#sort} on the same array type. Long and double rows time those engines
+ * moving the 64-bit keys themselves; {@code -p keys=long-indirect} times the index permutation
+ * that other engines sort instead. Each key type runs in its own fork so that one type's call
+ * profile does not slow down the next.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitiveKeySortBenchmark {
+    @Param({"merge", "quick", "heap", "dual-pivot-quick", "intro", "radix-lsd", "radix-msd"})
+    public String algorithm;
+
+    @Param({"int", "long", "double", "float"})
+    public String keys;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"RANDOM", "FEW_UNIQUE"})
+    public Distribution distribution;
+
+    private Consumer<Object> sorter;
+    private Object source;
+    private Object work;
+
+    @Setup
+    public void setUp() {
+        sorter = Engines.sorter(algorithm, keys);
+        source = distribution.generate(size, keys);
+        work = distribution.generate(size, keys);
+    }
+
+    @Benchmark
+    public Object sort() {
+        System.arraycopy(source, 0, work, 0, size);
+        sorter.accept(work);
+        return work;
+    }
+
+    @Benchmark
+    public Object jdk() {
+        System.arraycopy(source, 0, work, 0, size);
+        if (work instanceof long[]) {
+            Arrays.sort((long[]) work);
+        } else if (work instanceof double[]) {
+            Arrays.sort((double[]) work);
+        } else if (work instanceof float[]) {
+            Arrays.sort((float[]) work);
+        } else {
+            Arrays.sort((int[]) work);
+        }
+        return work;
+    }
+}
@@ -0,0 +1,48 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+/** Counts the buffers {@link SortingVisualizerComplete.BufferedMergeSort} asks its sink for. */
+public class BufferedMergeSortTest {
+    private static final int SIZE = 10_000;
+
+    @Test
+    public void allocatesOneBufferPerSort() {
+        SortingVisualizerComplete.BufferedMergeSort sort = new SortingVisualizerComplete.BufferedMergeSort();
+        for (int call = 1; call <= 3; call++) {
+            SortingVisualizerComplete.SortMetrics metrics = sortMetered(sort, SIZE);
+            assertEquals("allocations in call " + call, 1, metrics.allocations());
+            assertEquals("bytes in call " + call, 4L * SIZE, metrics.allocatedBytes());
+        }
+    }
+
+    @Test
+    public void allocatesNothingWithASharedBuffer() {
+        SortingVisualizerComplete.BufferedMergeSort sort = new SortingVisualizerComplete.BufferedMergeSort(new int[SIZE]);
+        for (int size : new int[] {SIZE, SIZE / 2 + 1}) {
+            assertEquals("allocations at " + size, 0, sortMetered(sort, size).allocations());
+        }
+    }
+
+    @Test
+    public void allocatesNothingForASingleRun() {
+        SortingVisualizerComplete.BufferedMergeSort sort = new SortingVisualizerComplete.BufferedMergeSort();
+        assertEquals(0, sortMetered(sort, 16).allocations());
+    }
+
+    private static SortingVisualizerComplete.SortMetrics sortMetered(SortingVisualizerComplete.SortingAlgorithm sort,
+                                                                     int size) {
+        int[] array = new SplittableRandom(size).ints(size).toArray();
+        int[] expected = array.clone();
+        Arrays.sort(expected);
+        SortingVisualizerComplete.SortMetrics metrics = new SortingVisualizerComplete.SortMetrics("merge-buffered", size);
+        sort.sort(array, new SortingVisualizerComplete.MeteredSink(SortingVisualizerComplete.HeadlessSink.INSTANCE,
+            metrics));
+        assertArrayEquals(expected, array);
+        return metrics;
+    }
+}